@@ -0,0 +1,74 @@
+package com.devsoap.parsers.benchmarks;
+
+import com.devsoap.parsers.caruna.CarunaParser;
+import com.devsoap.parsers.commons.EnergyReport;
+import com.devsoap.parsers.commons.OutputFormat;
+import com.devsoap.parsers.commons.RowWriter;
+import com.devsoap.parsers.composites.CarunaHelenParser;
+import com.devsoap.parsers.helen.HelenParser;
+import com.devsoap.parsers.plugsurfing.PlugSurfingParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CsvRenderingBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Results {
+        public Map<String, CarunaParser.Period> caruna;
+        public Map<String, HelenParser.Period> helen;
+        public Map<String, List<PlugSurfingParser.Session>> plugSurfing;
+
+        @Setup
+        public void parse(Invoices invoices) {
+            caruna = CarunaParser.parse(invoices.caruna);
+            helen = CarunaHelenParser.parseHelen(invoices.helen, caruna);
+            plugSurfing = PlugSurfingParser.parse(invoices.plugSurfing);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Output {
+        public PrintStream stream = new PrintStream(OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public void caruna(Results results, Output output) {
+        CarunaParser.print(results.caruna, output.stream);
+    }
+
+    @Benchmark
+    public void helen(Results results, Output output) {
+        HelenParser.print(results.helen, output.stream);
+    }
+
+    @Benchmark
+    public void carunaHelen(Results results, Output output) {
+        CarunaHelenParser.print(results.caruna, results.helen, output.stream);
+    }
+
+    @Benchmark
+    public void plugSurfing(Results results, Output output) {
+        PlugSurfingParser.print(results.plugSurfing, output.stream);
+    }
+
+    @Benchmark
+    public void carunaHelenNdjson(Results results, Output output) {
+        var rows = RowWriter.open(OutputFormat.NDJSON, EnergyReport.COLUMNS, output.stream);
+        CarunaHelenParser.write(results.caruna, results.helen, rows);
+        rows.finish();
+    }
+
+    @Benchmark
+    public void carunaHelenColumnar(Results results, Output output) {
+        var rows = RowWriter.open(OutputFormat.COLUMNAR, EnergyReport.COLUMNS, output.stream);
+        CarunaHelenParser.write(results.caruna, results.helen, rows);
+        rows.finish();
+    }
+}
@@ -0,0 +1,29 @@
+package com.devsoap.parsers.benchmarks;
+
+import com.devsoap.parsers.commons.PdfSource;
+import com.devsoap.parsers.generator.SyntheticInvoices;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Synthetic invoices of the benchmarked page count, generated in memory once per trial.
+ */
+@State(Scope.Benchmark)
+public class Invoices {
+
+    @Param({"2", "10", "100"})
+    public int pages;
+
+    public PdfSource caruna;
+    public PdfSource helen;
+    public PdfSource plugSurfing;
+
+    @Setup
+    public void generate() {
+        caruna = PdfSource.of(SyntheticInvoices.caruna(SyntheticInvoices.MAX_MONTHS, pages));
+        helen = PdfSource.of(SyntheticInvoices.helen(SyntheticInvoices.MAX_MONTHS, pages));
+        plugSurfing = PdfSource.of(SyntheticInvoices.plugSurfing(pages));
+    }
+}
@@ -0,0 +1,65 @@
+package com.devsoap.parsers.benchmarks;
+
+import com.devsoap.parsers.caruna.CarunaParser;
+import com.devsoap.parsers.commons.PageTextExtractor;
+import com.devsoap.parsers.helen.HelenParser;
+import com.devsoap.parsers.plugsurfing.PlugSurfingParser;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.canvas.parser.PdfTextExtractor;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LineClassificationBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Texts {
+        public String caruna;
+        public String helen;
+        public List<String> plugSurfing;
+        public Map<String, Integer> daySiirtoKwh;
+        public Map<String, Integer> nightSiirtoKwh;
+
+        @Setup
+        public void extract(Invoices invoices) throws IOException {
+            try (var document = new PdfDocument(invoices.caruna.open())) {
+                caruna = PdfTextExtractor.getTextFromPage(document.getPage(2));
+            }
+            try (var document = new PdfDocument(invoices.helen.open())) {
+                helen = PdfTextExtractor.getTextFromPage(document.getPage(2));
+            }
+            plugSurfing = new ArrayList<>();
+            PageTextExtractor.forEachPage(invoices.plugSurfing, (text, pageNumber) -> plugSurfing.add(text));
+
+            var carunaPeriods = CarunaParser.parseText(caruna);
+            daySiirtoKwh = new HashMap<>();
+            nightSiirtoKwh = new HashMap<>();
+            carunaPeriods.forEach((month, period) -> {
+                daySiirtoKwh.put(month, period.transferDayKwh);
+                nightSiirtoKwh.put(month, period.transferNightKwh);
+            });
+        }
+    }
+
+    @Benchmark
+    public Map<String, CarunaParser.Period> caruna(Texts texts) {
+        return CarunaParser.parseText(texts.caruna);
+    }
+
+    @Benchmark
+    public Map<String, HelenParser.Period> helen(Texts texts) {
+        return HelenParser.parseText(texts.helen, texts.daySiirtoKwh, texts.nightSiirtoKwh);
+    }
+
+    @Benchmark
+    public Map<String, List<PlugSurfingParser.Session>> plugSurfing(Texts texts) {
+        return PlugSurfingParser.parseText(texts.plugSurfing);
+    }
+}
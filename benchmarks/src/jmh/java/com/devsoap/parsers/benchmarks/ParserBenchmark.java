@@ -0,0 +1,46 @@
+package com.devsoap.parsers.benchmarks;
+
+import com.devsoap.parsers.caruna.CarunaParser;
+import com.devsoap.parsers.composites.CarunaHelenParser;
+import com.devsoap.parsers.helen.HelenParser;
+import com.devsoap.parsers.plugsurfing.PlugSurfingParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end parses, from opening the document to the parsed result.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ParserBenchmark {
+
+    private static final PrintStream NO_OUTPUT = new PrintStream(OutputStream.nullOutputStream());
+
+    @Benchmark
+    public Map<String, CarunaParser.Period> caruna(Invoices invoices) {
+        return CarunaParser.parse(invoices.caruna);
+    }
+
+    @Benchmark
+    public Map<String, HelenParser.Period> helen(Invoices invoices) {
+        return HelenParser.parse(invoices.helen, Map.of(), Map.of());
+    }
+
+    @Benchmark
+    public Map<String, List<PlugSurfingParser.Session>> plugSurfing(Invoices invoices) {
+        return PlugSurfingParser.parse(invoices.plugSurfing);
+    }
+
+    @Benchmark
+    public void carunaHelen(Invoices invoices) {
+        CarunaHelenParser.run(invoices.caruna, invoices.helen, NO_OUTPUT);
+    }
+}
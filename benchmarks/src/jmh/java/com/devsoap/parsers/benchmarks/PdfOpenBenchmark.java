@@ -0,0 +1,37 @@
+package com.devsoap.parsers.benchmarks;
+
+import com.devsoap.parsers.commons.PdfSource;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PdfOpenBenchmark {
+
+    @Benchmark
+    public int caruna(Invoices invoices) throws IOException {
+        return open(invoices.caruna);
+    }
+
+    @Benchmark
+    public int helen(Invoices invoices) throws IOException {
+        return open(invoices.helen);
+    }
+
+    @Benchmark
+    public int plugSurfing(Invoices invoices) throws IOException {
+        return open(invoices.plugSurfing);
+    }
+
+    private static int open(PdfSource source) throws IOException {
+        try (var document = new PdfDocument(source.open())) {
+            return document.getNumberOfPages();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.devsoap.parsers.benchmarks;
+
+import com.devsoap.parsers.caruna.CarunaParser;
+import com.devsoap.parsers.commons.PageLayout;
+import com.devsoap.parsers.commons.ParserMetrics;
+import com.devsoap.parsers.helen.HelenParser;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.canvas.parser.PdfTextExtractor;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(jvmArgsAppend = "-Dparsers.extraction.regions=true")
+public class TextExtractionBenchmark {
+
+    private static final PageLayout CARUNA_LAYOUT = PageLayout.of("parsers.caruna.regions", "0,250,595,592",
+            CarunaParser::hasCompletePeriods, "Perusmaksu", "siirto", "Sähkövero");
+    private static final PageLayout HELEN_LAYOUT = PageLayout.of("parsers.helen.regions", "0,250,595,592",
+            HelenParser::hasAllMonths, "perusmaksu ", "energia ");
+
+    @State(Scope.Thread)
+    public static class Documents {
+        public PdfDocument caruna;
+        public PdfDocument helen;
+        public PdfDocument plugSurfing;
+
+        @Setup
+        public void open(Invoices invoices) throws IOException {
+            caruna = new PdfDocument(invoices.caruna.open());
+            helen = new PdfDocument(invoices.helen.open());
+            plugSurfing = new PdfDocument(invoices.plugSurfing.open());
+        }
+
+        @TearDown
+        public void close() {
+            caruna.close();
+            helen.close();
+            plugSurfing.close();
+        }
+    }
+
+    @Benchmark
+    public String caruna(Documents documents) {
+        return PdfTextExtractor.getTextFromPage(documents.caruna.getPage(2));
+    }
+
+    @Benchmark
+    public String carunaRegions(Documents documents) {
+        return CARUNA_LAYOUT.extractText(documents.caruna.getPage(2), ParserMetrics.NONE);
+    }
+
+    @Benchmark
+    public String helen(Documents documents) {
+        return PdfTextExtractor.getTextFromPage(documents.helen.getPage(2));
+    }
+
+    @Benchmark
+    public String helenRegions(Documents documents) {
+        return HELEN_LAYOUT.extractText(documents.helen.getPage(2), ParserMetrics.NONE);
+    }
+
+    @Benchmark
+    public void plugSurfing(Documents documents, Blackhole blackhole) {
+        for (var pageIndex = 1; pageIndex <= documents.plugSurfing.getNumberOfPages(); pageIndex++) {
+            blackhole.consume(PdfTextExtractor.getTextFromPage(documents.plugSurfing.getPage(pageIndex)));
+        }
+    }
+}
@@ -0,0 +1,448 @@
+package com.devsoap.parsers.bulk;
+
+import com.devsoap.parsers.commons.EnergyReport;
+import com.devsoap.parsers.commons.InvoiceParser;
+import com.devsoap.parsers.commons.OutputFormat;
+import com.devsoap.parsers.commons.ParserRegistry;
+import com.devsoap.parsers.commons.PdfSource;
+import com.devsoap.parsers.commons.RowSchema;
+import com.devsoap.parsers.commons.RowWriter;
+import com.devsoap.parsers.composites.CarunaHelenParser;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Parses a large number of invoices in one JVM. Documents are parsed in parallel and the parser of each is
+ * detected with {@link ParserRegistry}. The rows of all documents of a parser are merged into one output file
+ * per parser, e.g. <code>CarunaParser.csv</code>.
+ *
+ * The content hash of every document whose rows have been written is appended to a checkpoint file in the
+ * output directory. Documents in the checkpoint are skipped, so an interrupted run picks up where it stopped
+ * when it is started again with the same output directory. A document is checkpointed only after its rows are
+ * flushed, so an interruption can at worst repeat the rows of the last document. Documents that fail to
+ * parse are reported and not checkpointed, so they are tried again.
+ *
+ * With <code>--pairs</code> the inputs are pairs of a Caruna and a Helen invoice of the same months, parsed
+ * together with {@link CarunaHelenParser#parsePairs} into <code>CarunaHelenParser.csv</code>. A pair is
+ * checkpointed by the hash of both documents.
+ *
+ * Usage: <code>BulkIngest [--format=csv|ndjson] [--threads=N] [--pairs] &lt;output dir&gt; &lt;input&gt;...</code>
+ * where an input is a PDF, a directory searched for PDFs or <code>@file</code> listing one path per line. With
+ * <code>--pairs</code> an input is <code>caruna.pdf,helen.pdf</code> or <code>@file</code> listing one such pair
+ * per line.
+ */
+public class BulkIngest {
+
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final int PROGRESS_INTERVAL = 1000;
+
+    private final Path outputDirectory;
+    private final OutputFormat format;
+    private final int threads;
+    private final Detector detector;
+    private final PairParser pairParser;
+    private final Set<String> processed = new HashSet<>();
+    private final Map<String, Output> outputs = new HashMap<>();
+    private BufferedWriter checkpoint;
+
+    private int parsed = 0;
+    private int skipped = 0;
+    private int failed = 0;
+
+    private static class Output {
+        private final OutputStream stream;
+        private final RowWriter rows;
+
+        private Output(OutputStream stream, RowWriter rows) {
+            this.stream = stream;
+            this.rows = rows;
+        }
+    }
+
+    private static class Document {
+        private final String file;
+        private final String contentHash;
+        private final String output;
+        private final RowSchema columns;
+        private final Consumer<RowWriter> rows;
+        private final Exception failure;
+
+        private Document(String file, String contentHash, String output, RowSchema columns,
+                         Consumer<RowWriter> rows, Exception failure) {
+            this.file = file;
+            this.contentHash = contentHash;
+            this.output = output;
+            this.columns = columns;
+            this.rows = rows;
+            this.failure = failure;
+        }
+
+        private static Document parsed(String file, String contentHash, InvoiceParser<?> parser,
+                                       Serializable result) {
+            return new Document(file, contentHash, parser.name(), parser.columns(),
+                    rows -> write(parser, result, rows), null);
+        }
+
+        private static Document skipped(String file, String contentHash) {
+            return new Document(file, contentHash, null, null, null, null);
+        }
+
+        private static Document failed(String file, String contentHash, Exception failure) {
+            return new Document(file, contentHash, null, null, null, failure);
+        }
+    }
+
+    /**
+     * Finds the parser of a document, {@link ParserRegistry#detect(PdfSource)} outside of tests.
+     */
+    interface Detector {
+        Optional<InvoiceParser<?>> detect(PdfSource source) throws IOException;
+    }
+
+    /**
+     * Parses pairs of Caruna and Helen invoices, {@link CarunaHelenParser#parsePairs} outside of tests.
+     */
+    interface PairParser {
+        List<CompletableFuture<CarunaHelenParser.Periods>> parse(List<PdfSource> carunaFiles,
+                                                                 List<PdfSource> helenFiles, Executor executor);
+    }
+
+    public BulkIngest(Path outputDirectory, OutputFormat format, int threads) {
+        this(outputDirectory, format, threads, ParserRegistry::detect, CarunaHelenParser::parsePairs);
+    }
+
+    BulkIngest(Path outputDirectory, OutputFormat format, int threads, Detector detector, PairParser pairParser) {
+        if (format == OutputFormat.COLUMNAR) {
+            throw new IllegalArgumentException("Columnar output can not be appended to, use csv or ndjson");
+        }
+        this.outputDirectory = outputDirectory;
+        this.format = format;
+        this.threads = threads;
+        this.detector = detector;
+        this.pairParser = pairParser;
+    }
+
+    public static void main(String[] args) throws IOException {
+        var format = OutputFormat.CSV;
+        var threads = Runtime.getRuntime().availableProcessors();
+        var pairs = false;
+        var arguments = new ArrayList<String>();
+        for (var arg : args) {
+            if (arg.startsWith("--format=")) {
+                format = OutputFormat.of(arg.substring("--format=".length()), null);
+            } else if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(arg.substring("--threads=".length()));
+            } else if (arg.equals("--pairs")) {
+                pairs = true;
+            } else {
+                arguments.add(arg);
+            }
+        }
+        if (arguments.size() < 2) {
+            System.err.println("Usage: BulkIngest [--format=csv|ndjson] [--threads=N] [--pairs] <output dir> "
+                    + "<input>...");
+            System.exit(1);
+        }
+        var ingest = new BulkIngest(Path.of(arguments.get(0)), format, threads);
+        if (pairs) {
+            ingest.runPairs(pairs(arguments.subList(1, arguments.size())));
+        } else {
+            ingest.run(files(arguments.subList(1, arguments.size()).stream().map(Path::of)
+                    .collect(Collectors.toList())));
+        }
+        System.exit(ingest.failed == 0 ? 0 : 2);
+    }
+
+    /**
+     * The PDFs of the inputs, in a stable order so repeated runs process them in the same order.
+     */
+    public static List<Path> files(List<Path> inputs) throws IOException {
+        var files = new ArrayList<Path>();
+        for (var input : inputs) {
+            var name = input.toString();
+            if (name.startsWith("@")) {
+                try (var lines = Files.lines(Path.of(name.substring(1)))) {
+                    lines.map(String::trim).filter(line -> !line.isEmpty()).map(Path::of).forEach(files::add);
+                }
+            } else if (Files.isDirectory(input)) {
+                try (Stream<Path> walk = Files.walk(input)) {
+                    walk.filter(Files::isRegularFile)
+                            .filter(file -> file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".pdf"))
+                            .sorted()
+                            .forEach(files::add);
+                }
+            } else {
+                files.add(input);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * The Caruna and Helen invoice of each pair of the inputs, in the order they are given.
+     */
+    public static List<Path[]> pairs(List<String> inputs) throws IOException {
+        var lines = new ArrayList<String>();
+        for (var input : inputs) {
+            if (input.startsWith("@")) {
+                try (var listed = Files.lines(Path.of(input.substring(1)))) {
+                    listed.map(String::trim).filter(line -> !line.isEmpty()).forEach(lines::add);
+                }
+            } else {
+                lines.add(input);
+            }
+        }
+        var pairs = new ArrayList<Path[]>(lines.size());
+        for (var line : lines) {
+            var files = line.split(",");
+            if (files.length != 2) {
+                throw new IllegalArgumentException("Expected caruna.pdf,helen.pdf but got " + line);
+            }
+            pairs.add(new Path[] {Path.of(files[0].trim()), Path.of(files[1].trim())});
+        }
+        return pairs;
+    }
+
+    public void run(List<Path> files) throws IOException {
+        ingest(files.size(), "documents", workers -> {
+            var completion = new ExecutorCompletionService<Document>(workers);
+            var maxInFlight = threads * 2;
+            var inFlight = 0;
+            for (var file : files) {
+                while (inFlight >= maxInFlight) {
+                    write(take(completion));
+                    inFlight--;
+                }
+                completion.submit(() -> parse(file));
+                inFlight++;
+            }
+            while (inFlight > 0) {
+                write(take(completion));
+                inFlight--;
+            }
+        });
+    }
+
+    /**
+     * Parses pairs of a Caruna and a Helen invoice, {@link #pairs(List)}. The pairs are handed to
+     * {@link CarunaHelenParser#parsePairs} a few at a time, so only the results of those are held in memory.
+     */
+    public void runPairs(List<Path[]> pairs) throws IOException {
+        ingest(pairs.size(), "pairs", workers -> {
+            var batchSize = threads * 2;
+            for (var from = 0; from < pairs.size(); from += batchSize) {
+                var names = new ArrayList<String>();
+                var contentHashes = new ArrayList<String>();
+                var carunaFiles = new ArrayList<PdfSource>();
+                var helenFiles = new ArrayList<PdfSource>();
+                for (var pair : pairs.subList(from, Math.min(pairs.size(), from + batchSize))) {
+                    var name = pair[0] + "," + pair[1];
+                    String contentHash;
+                    PdfSource carunaFile;
+                    PdfSource helenFile;
+                    try {
+                        carunaFile = PdfSource.of(pair[0]);
+                        helenFile = PdfSource.of(pair[1]);
+                        contentHash = pairHash(carunaFile.contentHash(), helenFile.contentHash());
+                    } catch (RuntimeException e) {
+                        write(Document.failed(name, null, e));
+                        continue;
+                    }
+                    if (isProcessed(contentHash)) {
+                        write(Document.skipped(name, contentHash));
+                        continue;
+                    }
+                    names.add(name);
+                    contentHashes.add(contentHash);
+                    carunaFiles.add(carunaFile);
+                    helenFiles.add(helenFile);
+                }
+                var periods = pairParser.parse(carunaFiles, helenFiles, workers);
+                for (var i = 0; i < periods.size(); i++) {
+                    write(pair(names.get(i), contentHashes.get(i), periods.get(i)));
+                }
+            }
+        });
+    }
+
+    private interface Ingestion {
+        void run(ExecutorService workers) throws IOException;
+    }
+
+    private void ingest(int inputs, String kind, Ingestion ingestion) throws IOException {
+        Files.createDirectories(outputDirectory);
+        var checkpointComplete = loadCheckpoint();
+        checkpoint = Files.newBufferedWriter(outputDirectory.resolve(CHECKPOINT_FILE), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        if (!checkpointComplete) {
+            checkpoint.newLine();
+        }
+
+        var started = System.nanoTime();
+        var threadCount = new AtomicInteger();
+        var workers = Executors.newFixedThreadPool(threads, runnable -> {
+            var thread = new Thread(runnable, "bulk-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            ingestion.run(workers);
+        } finally {
+            workers.shutdownNow();
+            for (var output : outputs.values()) {
+                output.rows.finish();
+                output.stream.close();
+            }
+            checkpoint.close();
+        }
+        System.err.printf("Parsed %d, skipped %d and failed %d of %d %s in %d s%n", parsed, skipped, failed,
+                inputs, kind, TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - started));
+    }
+
+    private Document parse(Path file) {
+        String contentHash = null;
+        try {
+            var source = PdfSource.of(file);
+            contentHash = source.contentHash();
+            if (isProcessed(contentHash)) {
+                return Document.skipped(file.toString(), contentHash);
+            }
+            var parser = detector.detect(source);
+            if (parser.isEmpty()) {
+                return Document.failed(file.toString(), contentHash,
+                        new IllegalArgumentException("Unrecognized invoice"));
+            }
+            return Document.parsed(file.toString(), contentHash, parser.get(),
+                    parser.get().parse(source, Map.of()));
+        } catch (Exception e) {
+            return Document.failed(file.toString(), contentHash, e);
+        }
+    }
+
+    private static Document pair(String name, String contentHash, CompletableFuture<CarunaHelenParser.Periods> periods)
+            throws IOException {
+        try {
+            var result = periods.get();
+            return new Document(name, contentHash, CarunaHelenParser.class.getSimpleName(), EnergyReport.COLUMNS,
+                    rows -> CarunaHelenParser.write(result.caruna, result.helen, rows), null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Bulk ingest was interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                return Document.failed(name, contentHash, (Exception) e.getCause());
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * A hash of the same length as a document hash, so pairs are checkpointed like documents.
+     */
+    private static String pairHash(String carunaHash, String helenHash) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            digest.update((carunaHash + helenHash).getBytes(StandardCharsets.US_ASCII));
+            return String.format("%064x", new BigInteger(1, digest.digest()));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private synchronized boolean isProcessed(String contentHash) {
+        return processed.contains(contentHash);
+    }
+
+    private void write(Document document) throws IOException {
+        if (document.failure != null) {
+            failed++;
+            System.err.println("Failed to parse " + document.file + ": " + document.failure.getMessage());
+            return;
+        }
+        synchronized (this) {
+            if (!processed.add(document.contentHash)) {
+                skipped++;
+                return;
+            }
+        }
+        var output = output(document.output, document.columns);
+        document.rows.accept(output.rows);
+        output.rows.flush();
+        checkpoint.write(document.contentHash);
+        checkpoint.newLine();
+        checkpoint.flush();
+        if (++parsed % PROGRESS_INTERVAL == 0) {
+            System.err.println("Parsed " + parsed + " documents");
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Serializable> void write(InvoiceParser<T> parser, Serializable result,
+                                                       RowWriter rows) {
+        parser.write((T) result, rows);
+    }
+
+    private Output output(String name, RowSchema columns) throws IOException {
+        var output = outputs.get(name);
+        if (output == null) {
+            var file = outputDirectory.resolve(name + "." + format.extension);
+            var header = !Files.exists(file) || Files.size(file) == 0;
+            var stream = new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.APPEND));
+            output = new Output(stream, RowWriter.open(format, columns, stream, header));
+            outputs.put(name, output);
+        }
+        return output;
+    }
+
+    /**
+     * Reads the hashes of the documents already written. A line cut short by an interruption is ignored.
+     *
+     * @return <code>false</code> if the last line was cut short
+     */
+    private boolean loadCheckpoint() throws IOException {
+        var file = outputDirectory.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(file) || Files.size(file) == 0) {
+            return true;
+        }
+        try (var lines = Files.lines(file, StandardCharsets.UTF_8)) {
+            lines.filter(line -> line.length() == 64).forEach(processed::add);
+        }
+        System.err.println("Resuming with " + processed.size() + " documents already processed");
+        try (var channel = FileChannel.open(file)) {
+            var last = ByteBuffer.allocate(1);
+            channel.read(last, channel.size() - 1);
+            return last.get(0) == '\n';
+        }
+    }
+
+    private static Document take(CompletionService<Document> completion) throws IOException {
+        try {
+            return completion.take().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Bulk ingest was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
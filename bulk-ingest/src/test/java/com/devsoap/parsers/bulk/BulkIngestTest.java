@@ -0,0 +1,292 @@
+package com.devsoap.parsers.bulk;
+
+import com.devsoap.parsers.caruna.CarunaParser;
+import com.devsoap.parsers.commons.InvoiceParser;
+import com.devsoap.parsers.commons.DocumentSample;
+import com.devsoap.parsers.commons.MonthlyUsage;
+import com.devsoap.parsers.commons.OutputFormat;
+import com.devsoap.parsers.commons.PdfSource;
+import com.devsoap.parsers.commons.RowSchema;
+import com.devsoap.parsers.commons.RowWriter;
+import com.devsoap.parsers.composites.CarunaHelenParser;
+import com.devsoap.parsers.helen.HelenParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkIngestTest {
+
+    private static final int DOCUMENTS = 10;
+
+    @TempDir
+    Path directory;
+
+    private Path output;
+    private List<Path> files;
+    private List<String> hashes;
+    private final Map<String, String> names = new ConcurrentHashMap<>();
+
+    /**
+     * Stands in for the JVM dying in the middle of a run.
+     */
+    private static class Crash extends Error {
+    }
+
+    /**
+     * Writes the content hash of each document as its row, and crashes on the given document.
+     */
+    private static class HashParser implements InvoiceParser<String> {
+        private final int crashAt;
+        private final AtomicInteger documents = new AtomicInteger();
+        private final Set<String> parsed = ConcurrentHashMap.newKeySet();
+
+        private HashParser(int crashAt) {
+            this.crashAt = crashAt;
+        }
+
+        @Override
+        public String name() {
+            return "HashParser";
+        }
+
+        @Override
+        public int sniff(DocumentSample sample) {
+            return 0;
+        }
+
+        @Override
+        public String parse(PdfSource file, Map<String, String> parameters) {
+            if (documents.incrementAndGet() == crashAt) {
+                throw new Crash();
+            }
+            parsed.add(file.contentHash());
+            return file.contentHash();
+        }
+
+        @Override
+        public RowSchema columns() {
+            return new RowSchema().text("hash", "hash");
+        }
+
+        @Override
+        public void write(String result, RowWriter rows) {
+            rows.text(result).endRow();
+        }
+
+        @Override
+        public List<MonthlyUsage> usage(String result) {
+            return List.of();
+        }
+
+        @Override
+        public String reportName() {
+            return "hashes";
+        }
+    }
+
+    @BeforeEach
+    void createDocuments() throws IOException {
+        var input = Files.createDirectories(directory.resolve("input"));
+        for (var i = 0; i < DOCUMENTS; i++) {
+            Files.writeString(input.resolve(String.format("invoice-%02d.pdf", i)), "%PDF-1.4 invoice " + i);
+        }
+        output = directory.resolve("output");
+        files = BulkIngest.files(List.of(input));
+        hashes = files.stream().map(file -> PdfSource.of(file).contentHash()).collect(Collectors.toList());
+    }
+
+    @Test
+    void resumesAfterCrashWithoutRepeatingOrLosingDocuments() throws IOException {
+        var crashing = new HashParser(5);
+        assertThrows(IllegalStateException.class, () -> ingest(crashing).run(files));
+        var checkpointed = checkpoint();
+        assertEquals(hashes.subList(0, 4), checkpointed);
+        assertEquals(checkpointed, rows());
+
+        var resumed = new HashParser(0);
+        ingest(resumed).run(files);
+        assertTrue(Collections.disjoint(checkpointed, resumed.parsed), "checkpointed documents were parsed again");
+        assertEquals(new HashSet<>(hashes.subList(4, DOCUMENTS)), resumed.parsed);
+        assertEquals(sorted(hashes), sorted(rows()));
+        assertEquals(sorted(hashes), sorted(checkpoint()));
+    }
+
+    @Test
+    void parsesDocumentOfTornCheckpointLineAgain() throws IOException {
+        assertThrows(IllegalStateException.class, () -> ingest(new HashParser(5)).run(files));
+        var checkpoint = output.resolve("checkpoint");
+        try (var channel = FileChannel.open(checkpoint, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 10);
+        }
+
+        var resumed = new HashParser(0);
+        ingest(resumed).run(files);
+        assertEquals(new HashSet<>(hashes.subList(3, DOCUMENTS)), resumed.parsed);
+        assertEquals(new HashSet<>(hashes), new HashSet<>(rows()));
+        assertEquals(sorted(hashes), sorted(checkpoint()));
+    }
+
+    @Test
+    void skipsEverythingWhenRunAgain() throws IOException {
+        ingest(new HashParser(0)).run(files);
+        var again = new HashParser(0);
+        ingest(again).run(files);
+        assertTrue(again.parsed.isEmpty());
+        assertEquals(sorted(hashes), sorted(rows()));
+    }
+
+    @Test
+    void parsesPairsAndSkipsThemWhenRunAgain() throws IOException {
+        var pairs = createPairs();
+        var parsed = ConcurrentHashMap.<String>newKeySet();
+        ingestPairs(pairs(parsed, null)).runPairs(BulkIngest.pairs(pairs));
+        assertEquals(Set.of("caruna-0", "helen-0", "caruna-1", "helen-1", "caruna-2", "helen-2"), parsed);
+        assertEquals(sorted(List.of("Tammikuu,4.00,,600,60.00,400,40.00,600,,400,,",
+                "Helmikuu,4.01,,601,60.10,400,40.00,601,,400,,",
+                "Maaliskuu,4.02,,602,60.20,400,40.00,602,,400,,")), sorted(pairRows()));
+        assertEquals(3, checkpoint().size());
+
+        var again = ConcurrentHashMap.<String>newKeySet();
+        ingestPairs(pairs(again, null)).runPairs(BulkIngest.pairs(pairs));
+        assertTrue(again.isEmpty());
+        assertEquals(3, pairRows().size());
+    }
+
+    @Test
+    void failedPairIsTriedAgainWithoutRepeatingOthers() throws IOException {
+        var pairs = createPairs();
+        ingestPairs(pairs(ConcurrentHashMap.newKeySet(), "helen-1")).runPairs(BulkIngest.pairs(pairs));
+        assertEquals(2, pairRows().size());
+        assertEquals(2, checkpoint().size());
+
+        var resumed = ConcurrentHashMap.<String>newKeySet();
+        ingestPairs(pairs(resumed, null)).runPairs(BulkIngest.pairs(pairs));
+        assertEquals(Set.of("caruna-1", "helen-1"), resumed);
+        assertEquals(3, pairRows().size());
+        assertEquals(3, checkpoint().size());
+    }
+
+    @Test
+    void readsPairsFromArgumentsAndFiles() throws IOException {
+        var list = Files.writeString(directory.resolve("pairs.txt"), "c1.pdf, h1.pdf\n\nc2.pdf,h2.pdf\n");
+        var pairs = BulkIngest.pairs(List.of("c0.pdf,h0.pdf", "@" + list));
+        assertEquals(List.of(List.of(Path.of("c0.pdf"), Path.of("h0.pdf")), List.of(Path.of("c1.pdf"),
+                Path.of("h1.pdf")), List.of(Path.of("c2.pdf"), Path.of("h2.pdf"))),
+                pairs.stream().map(List::of).collect(Collectors.toList()));
+        assertThrows(IllegalArgumentException.class, () -> BulkIngest.pairs(List.of("c0.pdf")));
+    }
+
+    private BulkIngest ingest(HashParser parser) {
+        return new BulkIngest(output, OutputFormat.CSV, 1, source -> Optional.of(parser),
+                CarunaHelenParser::parsePairs);
+    }
+
+    private BulkIngest ingestPairs(BulkIngest.PairParser pairParser) {
+        return new BulkIngest(output, OutputFormat.CSV, 2, source -> Optional.empty(), pairParser);
+    }
+
+    /**
+     * Three pairs whose documents contain their names, e.g. <code>caruna-0</code>.
+     */
+    private List<String> createPairs() throws IOException {
+        var input = Files.createDirectories(directory.resolve("pairs"));
+        var pairs = new ArrayList<String>();
+        for (var i = 0; i < 3; i++) {
+            for (var name : List.of("caruna-" + i, "helen-" + i)) {
+                var file = Files.writeString(input.resolve(name + ".pdf"), name);
+                names.put(PdfSource.of(file).contentHash(), name);
+            }
+            pairs.add(input.resolve("caruna-" + i + ".pdf") + "," + input.resolve("helen-" + i + ".pdf"));
+        }
+        return pairs;
+    }
+
+    /**
+     * Parses each pair into one month, the month of the pair's index, and fails on the document with the given
+     * content.
+     */
+    private BulkIngest.PairParser pairs(Set<String> parsed, String failOn) {
+        return (carunaFiles, helenFiles, executor) -> {
+            var periods = new ArrayList<CompletableFuture<CarunaHelenParser.Periods>>();
+            for (var i = 0; i < carunaFiles.size(); i++) {
+                var carunaFile = carunaFiles.get(i);
+                var helenFile = helenFiles.get(i);
+                periods.add(CarunaHelenParser.parseAsync(() -> {
+                    var name = content(carunaFile, parsed, failOn);
+                    var period = new CarunaParser.Period();
+                    period.transferDayKwh = 600 + index(name);
+                    period.transferNightKwh = 400;
+                    return Map.of(month(name), period);
+                }, () -> {
+                    var name = content(helenFile, parsed, failOn);
+                    var reading = new HelenParser.Reading();
+                    reading.totalEnergy = 1000 + index(name);
+                    reading.eurPerKwh = 0.1;
+                    var readings = new HelenParser.Readings();
+                    readings.basicPay = 4 + index(name) / 100.0;
+                    readings.months.put(month(name), reading);
+                    return readings;
+                }, executor));
+            }
+            return periods;
+        };
+    }
+
+    private String content(PdfSource source, Set<String> parsed, String failOn) {
+        var name = names.get(source.contentHash());
+        if (name.equals(failOn)) {
+            throw new IllegalArgumentException("Broken " + name);
+        }
+        parsed.add(name);
+        return name;
+    }
+
+    private static int index(String name) {
+        return name.charAt(name.length() - 1) - '0';
+    }
+
+    private static String month(String name) {
+        return List.of("Tammikuu", "Helmikuu", "Maaliskuu").get(index(name));
+    }
+
+    private List<String> pairRows() throws IOException {
+        var lines = Files.readAllLines(output.resolve("CarunaHelenParser.csv"), StandardCharsets.UTF_8);
+        assertTrue(lines.get(0).startsWith("Kuukausi,"));
+        return lines.subList(1, lines.size());
+    }
+
+    /**
+     * The complete hashes of the checkpoint, a line cut short is left out.
+     */
+    private List<String> checkpoint() throws IOException {
+        return Files.readAllLines(output.resolve("checkpoint"), StandardCharsets.UTF_8).stream()
+                .filter(line -> line.length() == 64)
+                .collect(Collectors.toList());
+    }
+
+    private List<String> rows() throws IOException {
+        var lines = Files.readAllLines(output.resolve("HashParser.csv"), StandardCharsets.UTF_8);
+        assertEquals("hash", lines.get(0));
+        return lines.subList(1, lines.size());
+    }
+
+    private static List<String> sorted(List<String> values) {
+        var sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        return sorted;
+    }
+}
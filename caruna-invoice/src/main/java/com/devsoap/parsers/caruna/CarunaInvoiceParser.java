@@ -0,0 +1,51 @@
+package com.devsoap.parsers.caruna;
+
+import com.devsoap.parsers.commons.DocumentSample;
+import com.devsoap.parsers.commons.EnergyReport;
+import com.devsoap.parsers.commons.InvoiceParser;
+import com.devsoap.parsers.commons.MonthlyUsage;
+import com.devsoap.parsers.commons.PdfSource;
+import com.devsoap.parsers.commons.RowSchema;
+import com.devsoap.parsers.commons.RowWriter;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class CarunaInvoiceParser implements InvoiceParser<HashMap<String, CarunaParser.Period>> {
+
+    @Override
+    public String name() {
+        return CarunaParser.class.getSimpleName();
+    }
+
+    @Override
+    public int sniff(DocumentSample sample) {
+        return sample.score("caruna");
+    }
+
+    @Override
+    public HashMap<String, CarunaParser.Period> parse(PdfSource file, Map<String, String> parameters) {
+        return new HashMap<>(CarunaParser.parse(file));
+    }
+
+    @Override
+    public RowSchema columns() {
+        return EnergyReport.COLUMNS;
+    }
+
+    @Override
+    public void write(HashMap<String, CarunaParser.Period> periods, RowWriter rows) {
+        CarunaParser.write(periods, rows);
+    }
+
+    @Override
+    public List<MonthlyUsage> usage(HashMap<String, CarunaParser.Period> periods) {
+        return CarunaParser.usage(periods);
+    }
+
+    @Override
+    public String reportName() {
+        return "caruna-report";
+    }
+}
@@ -1,19 +1,25 @@
 package com.devsoap.parsers.caruna;
 
-import com.itextpdf.kernel.pdf.PdfDocument;
-import com.itextpdf.kernel.pdf.PdfReader;
-import com.itextpdf.kernel.pdf.canvas.parser.PdfTextExtractor;
+import com.devsoap.parsers.commons.EnergyReport;
+import com.devsoap.parsers.commons.FinnishFields;
+import com.devsoap.parsers.commons.LineClassifier;
+import com.devsoap.parsers.commons.MonthlyUsage;
+import com.devsoap.parsers.commons.OutputFormat;
+import com.devsoap.parsers.commons.PageLayout;
+import com.devsoap.parsers.commons.ParserMetrics;
+import com.devsoap.parsers.commons.PdfSource;
+import com.devsoap.parsers.commons.RowWriter;
 
 import java.io.IOException;
 import java.io.PrintStream;
+import java.io.Serializable;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
-import java.time.format.FormatStyle;
-import java.time.format.TextStyle;
 import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 public class CarunaParser {
 
@@ -23,12 +29,14 @@ public class CarunaParser {
     private static final Pattern O_SIIRTO_PATTERN = Pattern.compile("Yösiirto.* (\\d*,\\d\\d) snt.* (\\d*,\\d\\d) (EUR|€)");
     private static final Pattern TAX_PATTERN = Pattern.compile("Sähkövero.* (\\d*,\\d\\d) (EUR|€)");
 
-    private static final Locale FI_LOCALE = new Locale("FI", "fi");
-    private static final DateTimeFormatter FI_DATE = DateTimeFormatter
-            .ofLocalizedDate(FormatStyle.SHORT)
-            .withLocale(FI_LOCALE);
+    private static final PageLayout BILLING_ROWS = PageLayout.of("parsers.caruna.regions", "0,250,595,592",
+            CarunaParser::hasCompletePeriods, "Perusmaksu", "siirto", "Sähkövero");
 
-    public static class Period {
+    private static final ParserMetrics METRICS = ParserMetrics.of(CarunaParser.class);
+
+    public static class Period implements Serializable {
+        public int year = 0;
+        public int month = 0;
         public double basicPay = 0.0;
         public double transferDayPrice = 0.0;
         public double transferDayTotal = 0.0;
@@ -41,7 +49,9 @@ public class CarunaParser {
         @Override
         public String toString() {
             return "Period{" +
-                    "basicPay=" + basicPay +
+                    "year=" + year +
+                    ", month=" + month +
+                    ", basicPay=" + basicPay +
                     ", transferDayPrice=" + transferDayPrice +
                     ", transferDayTotal=" + transferDayTotal +
                     ", transferDayKwh=" + transferDayKwh +
@@ -60,66 +70,202 @@ public class CarunaParser {
     }
 
     public static void run(Path carunaFile, PrintStream result) {
-        result.println("Kuukausi,Perusmaksu (energia),Perusmaksu (siirto),Päiväenergia (kWh),Päiväenergia " +
-                "(EUR),Yöenergia (kWh),Yöenergia (EUR),Päiväsiirto (kWh),Päiväsiirto (EUR),Yösiirto (kWh)" +
-                ",Yösiirto (EUR),Vero");
+        run(PdfSource.of(carunaFile), result);
+    }
+
+    public static void run(PdfSource carunaFile, PrintStream result) {
+        print(parse(carunaFile), result);
+    }
+
+    public static void print(Map<String, Period> periods, PrintStream result) {
+        var rows = RowWriter.open(OutputFormat.CSV, EnergyReport.COLUMNS, result);
+        write(periods, rows);
+        rows.finish();
+    }
+
+    /**
+     * Writes a row of {@link EnergyReport#COLUMNS} per period.
+     */
+    public static void write(Map<String, Period> periods, RowWriter rows) {
+        var started = System.nanoTime();
+        periods.forEach((n,p) -> rows
+                .text(n).empty().decimal(p.basicPay)
+                .empty().empty().empty().empty()
+                .integer(p.transferDayKwh).decimal(p.transferDayTotal)
+                .integer(p.transferNightKwh).decimal(p.transferNightTotal)
+                .decimal(p.tax)
+                .endRow());
+        METRICS.render.observeNanos(System.nanoTime() - started);
+    }
 
-        parse(carunaFile).forEach((n,p) -> {
-            var csv = String.format("%s,,%.02f,,,,,%d, %.02f,%d, %.02f, %.02f",
-                    n, p.basicPay, p.transferDayKwh, p.transferDayTotal, p.transferNightKwh, p.transferNightTotal, p.tax);
-            result.println(csv);
-        });
+    /**
+     * The transferred kWh and the total of each period.
+     */
+    public static List<MonthlyUsage> usage(Map<String, Period> periods) {
+        return periods.values().stream()
+                .map(p -> new MonthlyUsage(p.year, p.month, p.transferDayKwh + p.transferNightKwh,
+                        p.basicPay + p.transferDayTotal + p.transferNightTotal + p.tax))
+                .collect(Collectors.toList());
     }
 
     public static Map<String, Period> parse(Path file) {
-        try(var reader = new PdfReader(file.toFile())) {
-            var document = new PdfDocument(reader);
+        return parse(PdfSource.of(file));
+    }
+
+    public static Map<String, Period> parse(PdfSource file) {
+        var collector = new PeriodCollector((month, period) -> {});
+        parsePage(file, collector);
+        return collector.periods;
+    }
+
+    /**
+     * Hands each billing period to the consumer as soon as its rows have been read, that is when the next
+     * period starts or the page ends.
+     */
+    public static void parse(PdfSource file, BiConsumer<String, Period> periods) {
+        parsePage(file, new PeriodCollector(periods));
+    }
+
+    public static Map<String, Period> parseText(String text) {
+        var collector = new PeriodCollector((month, period) -> {});
+        collect(text, collector);
+        return collector.periods;
+    }
+
+    /**
+     * Whether every billing period of the text starts with its date range and has its basic pay, transfer and
+     * tax rows, so that no rows of the page were cut off.
+     */
+    public static boolean hasCompletePeriods(String text) {
+        var check = new CompletenessCheck();
+        check.classifier.classifyLines(text);
+        return check.complete();
+    }
+
+    private static void parsePage(PdfSource file, PeriodCollector collector) {
+        var started = System.nanoTime();
+        try(var document = file.openDocument()) {
+            METRICS.open.observeNanos(System.nanoTime() - started);
+            METRICS.pages.observe(document.getNumberOfPages());
+            var extractionStarted = System.nanoTime();
             var page2 = document.getPage(2);
-            var text = PdfTextExtractor.getTextFromPage(page2);
-            var scanner = new Scanner(text);
-            var periods = new HashMap<String, Period>();
-
-            Period currentPeriod = null;
-            while(scanner.hasNextLine()) {
-                var line = scanner.nextLine();
-                if(DATE_RANGE_PATTERN.asPredicate().test(line)) {
-                    var matcher = DATE_RANGE_PATTERN.matcher(line);
-                    while(matcher.find()) {
-                        var month = LocalDate.from( FI_DATE.parse(matcher.group(1)))
-                                .getMonth()
-                                .getDisplayName(TextStyle.FULL, new Locale("FI","fi"));
-                        month = month.substring(0,1).toUpperCase() + month.substring(1, month.length()-2);
-                        currentPeriod = periods.computeIfAbsent(month, s -> new Period());
-                    }
-                } else if(PERUSMAKSU_PATTERN.asPredicate().test(line)) {
-                    var matcher = PERUSMAKSU_PATTERN.matcher(line);
-                    while (matcher.find()) {
-                        currentPeriod.basicPay = Double.parseDouble(matcher.group(1).replace(",", "."));
-                    }
-                } else if(P_SIIRTO_PATTERN.asPredicate().test(line)) {
-                    var matcher = P_SIIRTO_PATTERN.matcher(line);
-                    while (matcher.find()) {
-                        currentPeriod.transferDayPrice = Double.parseDouble(matcher.group(1).replace(",", ".")) / 100.0;
-                        currentPeriod.transferDayTotal = Double.parseDouble(matcher.group(2).replace(",", "."));
-                        currentPeriod.transferDayKwh = (int) Math.round(currentPeriod.transferDayTotal / currentPeriod.transferDayPrice);
-                    }
-                } else if(O_SIIRTO_PATTERN.asPredicate().test(line)) {
-                    var matcher = O_SIIRTO_PATTERN.matcher(line);
-                    while (matcher.find()) {
-                        currentPeriod.transferNightPrice = Double.parseDouble(matcher.group(1).replace(",", ".")) / 100.0;
-                        currentPeriod.transferNightTotal = Double.parseDouble(matcher.group(2).replace(",", "."));
-                        currentPeriod.transferNightKwh = (int) Math.round(currentPeriod.transferNightTotal / currentPeriod.transferNightPrice);
-                    }
-                } else if(TAX_PATTERN.asPredicate().test(line)) {
-                    var matcher = TAX_PATTERN.matcher(line);
-                    while (matcher.find()) {
-                        currentPeriod.tax = Double.parseDouble(matcher.group(1).replace(",", "."));
-                    }
-                }
-            }
-            return periods;
+            var text = BILLING_ROWS.extractText(page2, METRICS);
+            METRICS.extract.observeNanos(System.nanoTime() - extractionStarted);
+            collect(text, collector);
         } catch (IOException e) {
+            METRICS.failures.increment();
             throw new RuntimeException(e);
+        } catch (RuntimeException e) {
+            METRICS.failures.increment();
+            throw e;
+        }
+    }
+
+    private static void collect(String text, PeriodCollector collector) {
+        var started = System.nanoTime();
+        collector.classifier.classifyLines(text);
+        collector.finish();
+        METRICS.match.observeNanos(System.nanoTime() - started);
+    }
+
+    private static class PeriodCollector {
+        private final BiConsumer<String, Period> completedPeriods;
+        private final Map<String, Period> periods = new HashMap<>();
+        private final LineClassifier classifier = new LineClassifier(METRICS)
+                .rule(" - ", DATE_RANGE_PATTERN, this::dateRange)
+                .rule("Perusmaksu", PERUSMAKSU_PATTERN, this::basicPay)
+                .rule("Päiväsiirto", P_SIIRTO_PATTERN, this::dayTransfer)
+                .rule("Yösiirto", O_SIIRTO_PATTERN, this::nightTransfer)
+                .rule("Sähkövero", TAX_PATTERN, this::tax);
+        private String currentMonth = null;
+        private Period currentPeriod = null;
+
+        private PeriodCollector(BiConsumer<String, Period> completedPeriods) {
+            this.completedPeriods = completedPeriods;
+        }
+
+        private void dateRange(Matcher matcher, CharSequence line) {
+            finish();
+            var date = FinnishFields.date(line, matcher.start(1), matcher.end(1));
+            currentMonth = FinnishFields.monthKey(FinnishFields.month(date));
+            currentPeriod = periods.computeIfAbsent(currentMonth, s -> new Period());
+            currentPeriod.year = FinnishFields.year(date);
+            currentPeriod.month = FinnishFields.month(date);
+        }
+
+        private void finish() {
+            if (currentPeriod != null) {
+                completedPeriods.accept(currentMonth, currentPeriod);
+            }
+        }
+
+        private Period currentPeriod(CharSequence line) {
+            if (currentPeriod == null) {
+                throw new IllegalArgumentException("Billing row before the first billing period: " + line);
+            }
+            return currentPeriod;
+        }
+
+        private void basicPay(Matcher matcher, CharSequence line) {
+            currentPeriod(line).basicPay = decimal(matcher, line, 1);
+        }
+
+        private void dayTransfer(Matcher matcher, CharSequence line) {
+            var period = currentPeriod(line);
+            period.transferDayPrice = decimal(matcher, line, 1) / 100.0;
+            period.transferDayTotal = decimal(matcher, line, 2);
+            period.transferDayKwh = (int) Math.round(period.transferDayTotal / period.transferDayPrice);
+        }
+
+        private void nightTransfer(Matcher matcher, CharSequence line) {
+            var period = currentPeriod(line);
+            period.transferNightPrice = decimal(matcher, line, 1) / 100.0;
+            period.transferNightTotal = decimal(matcher, line, 2);
+            period.transferNightKwh = (int) Math.round(period.transferNightTotal / period.transferNightPrice);
+        }
+
+        private void tax(Matcher matcher, CharSequence line) {
+            currentPeriod(line).tax = decimal(matcher, line, 1);
+        }
+
+        private static double decimal(Matcher matcher, CharSequence line, int group) {
+            return FinnishFields.decimal(line, matcher.start(group), matcher.end(group));
+        }
+    }
+
+    private static class CompletenessCheck {
+        private static final int BASIC_PAY = 1;
+        private static final int TRANSFER = 2;
+        private static final int TAX = 4;
+        private static final int ALL_ROWS = BASIC_PAY | TRANSFER | TAX;
+
+        private final LineClassifier classifier = new LineClassifier()
+                .rule(" - ", DATE_RANGE_PATTERN, (matcher, line) -> startPeriod())
+                .rule("Perusmaksu", PERUSMAKSU_PATTERN, (matcher, line) -> row(BASIC_PAY))
+                .rule("Päiväsiirto", P_SIIRTO_PATTERN, (matcher, line) -> row(TRANSFER))
+                .rule("Yösiirto", O_SIIRTO_PATTERN, (matcher, line) -> row(TRANSFER))
+                .rule("Sähkövero", TAX_PATTERN, (matcher, line) -> row(TAX));
+        private int periods = 0;
+        private int rows = 0;
+        private boolean incomplete = false;
+
+        private void startPeriod() {
+            if (periods > 0 && rows != ALL_ROWS) {
+                incomplete = true;
+            }
+            periods++;
+            rows = 0;
+        }
+
+        private void row(int row) {
+            if (periods == 0) {
+                incomplete = true;
+            }
+            rows |= row;
+        }
+
+        private boolean complete() {
+            return periods > 0 && rows == ALL_ROWS && !incomplete;
         }
     }
 }
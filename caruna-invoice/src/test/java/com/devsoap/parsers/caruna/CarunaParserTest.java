@@ -0,0 +1,85 @@
+package com.devsoap.parsers.caruna;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CarunaParserTest {
+
+    private static final String PAGE_2 = String.join("\n",
+            "Sähkönsiirtolasku",
+            "Laskutusjakso 1.1.2021 - 31.1.2021",
+            "Perusmaksu 1 kk 4,63 €",
+            "Päiväsiirto 351 kWh 2,98 snt/kWh 10,46 €",
+            "Yösiirto 512 kWh 1,57 snt/kWh 8,04 €",
+            "Sähkövero 19,33 €",
+            "Laskutusjakso 1.2.2021 - 28.2.2021",
+            "Perusmaksu 1 kk 4,63 EUR",
+            "Päiväsiirto 402 kWh 3,05 snt/kWh 12,26 €",
+            "Yösiirto 377 kWh 1,62 snt/kWh 6,11 €",
+            "Sähkövero 17,45 €",
+            "Yhteensä 82,91 €");
+
+    @Test
+    void parsesPeriods() {
+        var periods = CarunaParser.parseText(PAGE_2);
+        assertEquals(Set.of("Tammikuu", "Helmikuu"), periods.keySet());
+
+        var january = periods.get("Tammikuu");
+        assertEquals(2021, january.year);
+        assertEquals(1, january.month);
+        assertEquals(4.63, january.basicPay);
+        assertEquals(0.0298, january.transferDayPrice, 1e-12);
+        assertEquals(10.46, january.transferDayTotal);
+        assertEquals(351, january.transferDayKwh);
+        assertEquals(0.0157, january.transferNightPrice, 1e-12);
+        assertEquals(8.04, january.transferNightTotal);
+        assertEquals(512, january.transferNightKwh);
+        assertEquals(19.33, january.tax);
+
+        var february = periods.get("Helmikuu");
+        assertEquals(2021, february.year);
+        assertEquals(2, february.month);
+        assertEquals(4.63, february.basicPay);
+        assertEquals(12.26, february.transferDayTotal);
+        assertEquals(402, february.transferDayKwh);
+        assertEquals(6.11, february.transferNightTotal);
+        assertEquals(377, february.transferNightKwh);
+        assertEquals(17.45, february.tax);
+    }
+
+    @Test
+    void periodsAreCompleteOnlyWithDateRangeAndAllRows() {
+        assertTrue(CarunaParser.hasCompletePeriods(PAGE_2));
+        // Rows cut off at the bottom of the region
+        assertFalse(CarunaParser.hasCompletePeriods(PAGE_2.substring(0, PAGE_2.indexOf("Sähkövero 17,45"))));
+        // Date range of the first period cut off at the top of the region
+        assertFalse(CarunaParser.hasCompletePeriods(PAGE_2.replace("Laskutusjakso 1.1.2021 - 31.1.2021\n", "")));
+        // Rows of a period cut off in between
+        assertFalse(CarunaParser.hasCompletePeriods(PAGE_2.replace("Sähkövero 19,33 €\n", "")));
+        assertFalse(CarunaParser.hasCompletePeriods("Sähkönsiirtolasku"));
+    }
+
+    @Test
+    void rejectsRowsBeforeFirstPeriod() {
+        assertThrows(IllegalArgumentException.class, () -> CarunaParser.parseText("Perusmaksu 1 kk 4,63 €"));
+    }
+
+    @Test
+    void printsReport() {
+        var output = new ByteArrayOutputStream();
+        CarunaParser.print(CarunaParser.parseText(PAGE_2), new PrintStream(output, true, StandardCharsets.UTF_8));
+        assertEquals(String.join("\n",
+                "Kuukausi,Perusmaksu (energia),Perusmaksu (siirto),Päiväenergia (kWh),Päiväenergia (EUR),"
+                        + "Yöenergia (kWh),Yöenergia (EUR),Päiväsiirto (kWh),Päiväsiirto (EUR),Yösiirto (kWh),"
+                        + "Yösiirto (EUR),Vero",
+                "Helmikuu,,4.63,,,,,402,12.26,377,6.11,17.45",
+                "Tammikuu,,4.63,,,,,351,10.46,512,8.04,19.33",
+                ""), output.toString(StandardCharsets.UTF_8));
+    }
+}
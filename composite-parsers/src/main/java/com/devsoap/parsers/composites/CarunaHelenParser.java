@@ -1,16 +1,41 @@
 package com.devsoap.parsers.composites;
 
 import com.devsoap.parsers.caruna.CarunaParser;
+import com.devsoap.parsers.commons.EnergyReport;
+import com.devsoap.parsers.commons.OutputFormat;
+import com.devsoap.parsers.commons.ParserMetrics;
+import com.devsoap.parsers.commons.PdfSource;
+import com.devsoap.parsers.commons.RowWriter;
 import com.devsoap.parsers.helen.HelenParser;
 
 import java.io.PrintStream;
+import java.io.Serializable;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 public class CarunaHelenParser {
 
+    private static final ParserMetrics METRICS = ParserMetrics.of(CarunaHelenParser.class);
+
+    public static class Periods implements Serializable {
+        public final Map<String, CarunaParser.Period> caruna;
+        public final Map<String, HelenParser.Period> helen;
+
+        public Periods(Map<String, CarunaParser.Period> caruna, Map<String, HelenParser.Period> helen) {
+            this.caruna = caruna;
+            this.helen = helen;
+        }
+    }
+
     public static void main(String[] args) {
         var carunaFile = Path.of(args[0]);
         var helenFile = Path.of(args[1]);
@@ -18,29 +43,153 @@ public class CarunaHelenParser {
     }
 
     public static void run(Path carunaFile, Path helenFile, PrintStream result) {
-        var carunaPeriods = CarunaParser.parse(carunaFile);
+        run(PdfSource.of(carunaFile), PdfSource.of(helenFile), result);
+    }
+
+    public static void run(PdfSource carunaFile, PdfSource helenFile, PrintStream result) {
+        var helenReader = Executors.newSingleThreadExecutor();
+        try {
+            var periods = parse(carunaFile, helenFile, helenReader);
+            print(periods.caruna, periods.helen, result);
+        } finally {
+            helenReader.shutdown();
+        }
+    }
+
+    /**
+     * Parses both invoices at the same time. Only splitting the Helen energy into day and night energy needs
+     * the Caruna periods, so that is done once both have been read.
+     *
+     * @param executor
+     *      reads the Helen invoice while the calling thread waits for it, so it should not be the executor the
+     *      caller itself runs on
+     */
+    public static Periods parse(PdfSource carunaFile, PdfSource helenFile, Executor executor) {
+        return parse(() -> CarunaParser.parse(carunaFile), () -> HelenParser.read(helenFile), executor);
+    }
+
+    /**
+     * Reads the Helen invoice on the given executor while the Caruna invoice is parsed on the calling thread.
+     */
+    public static Periods parse(Supplier<Map<String, CarunaParser.Period>> carunaParser,
+                                Supplier<HelenParser.Readings> helenReader, Executor executor) {
+        var helenReadings = CompletableFuture.supplyAsync(helenReader, executor);
+        var carunaPeriods = carunaParser.get();
+        return combine(carunaPeriods, await(helenReadings));
+    }
+
+    /**
+     * Parses pairs of invoices, both invoices of every pair concurrently on the given executor.
+     *
+     * @return the periods of each pair, in the order of the given lists. A pair that fails to parse completes
+     *      exceptionally without affecting the others.
+     */
+    public static List<CompletableFuture<Periods>> parsePairs(List<PdfSource> carunaFiles,
+                                                              List<PdfSource> helenFiles, Executor executor) {
+        if (carunaFiles.size() != helenFiles.size()) {
+            throw new IllegalArgumentException(carunaFiles.size() + " Caruna invoices but "
+                    + helenFiles.size() + " Helen invoices");
+        }
+        var pairs = new ArrayList<CompletableFuture<Periods>>(carunaFiles.size());
+        for (var i = 0; i < carunaFiles.size(); i++) {
+            var carunaFile = carunaFiles.get(i);
+            var helenFile = helenFiles.get(i);
+            pairs.add(parseAsync(() -> CarunaParser.parse(carunaFile), () -> HelenParser.read(helenFile),
+                    executor));
+        }
+        return pairs;
+    }
+
+    /**
+     * Parses the Caruna invoice and reads the Helen invoice as separate tasks on the given executor, and
+     * combines them once both are done.
+     */
+    public static CompletableFuture<Periods> parseAsync(Supplier<Map<String, CarunaParser.Period>> carunaParser,
+                                                        Supplier<HelenParser.Readings> helenReader,
+                                                        Executor executor) {
+        return CompletableFuture.supplyAsync(carunaParser, executor)
+                .thenCombine(CompletableFuture.supplyAsync(helenReader, executor), CarunaHelenParser::combine);
+    }
+
+    public static Map<String, HelenParser.Period> parseHelen(PdfSource helenFile,
+                                                             Map<String, CarunaParser.Period> carunaPeriods) {
+        return computeHelen(HelenParser.read(helenFile), carunaPeriods);
+    }
+
+    public static Map<String, HelenParser.Period> computeHelen(HelenParser.Readings helenReadings,
+                                                               Map<String, CarunaParser.Period> carunaPeriods) {
         var nightSiirto = carunaPeriods.entrySet().stream()
                 .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().transferNightKwh));
         var daySiirto = carunaPeriods.entrySet().stream()
                 .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().transferDayKwh));
-        var helenPeriods = HelenParser.parse(helenFile, daySiirto, nightSiirto);
+        return HelenParser.compute(helenReadings, daySiirto, nightSiirto);
+    }
+
+    private static Periods combine(Map<String, CarunaParser.Period> carunaPeriods,
+                                   HelenParser.Readings helenReadings) {
+        return new Periods(carunaPeriods, computeHelen(helenReadings, carunaPeriods));
+    }
 
-        result.println("Kuukausi,Perusmaksu (energia),Perusmaksu (siirto),Päiväenergia (kWh),Päiväenergia " +
-                "(EUR),Yöenergia (kWh),Yöenergia (EUR),Päiväsiirto (kWh),Päiväsiirto (EUR),Yösiirto (kWh)" +
-                ",Yösiirto (EUR),Vero");
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    public static void print(Map<String, CarunaParser.Period> carunaPeriods,
+                             Map<String, HelenParser.Period> helenPeriods, PrintStream result) {
+        var rows = RowWriter.open(OutputFormat.CSV, EnergyReport.COLUMNS, result);
+        write(carunaPeriods, helenPeriods, rows);
+        rows.finish();
+    }
 
+    /**
+     * Writes a row of {@link EnergyReport#COLUMNS} per month of either invoice. Zero values are left empty.
+     */
+    public static void write(Map<String, CarunaParser.Period> carunaPeriods,
+                             Map<String, HelenParser.Period> helenPeriods, RowWriter rows) {
+        var started = System.nanoTime();
         var months = new HashSet<>(carunaPeriods.keySet());
         months.addAll(helenPeriods.keySet());
         months.forEach(month -> {
             var hp = helenPeriods.getOrDefault(month, new HelenParser.Period());
             var cp = carunaPeriods.getOrDefault(month, new CarunaParser.Period());
 
-            var csv = String.format("%s,%.02f,%.02f,%d,%.02f,%d,%.02f,%d,%.02f,%d,%.02f,%.02f",
-                    month, hp.basicPay, cp.basicPay, hp.dayEnergy, hp.dayEnergyEur, hp.nightEnergy,
-                    hp.nightEnergyEur, cp.transferDayKwh, cp.transferDayTotal, cp.transferNightKwh,
-                    cp.transferNightTotal, cp.tax);
-            csv = csv.replace(",0,",",,").replace(",0.00",",");
-            result.println(csv);
+            rows.text(month);
+            decimal(rows, hp.basicPay);
+            decimal(rows, cp.basicPay);
+            integer(rows, hp.dayEnergy);
+            decimal(rows, hp.dayEnergyEur);
+            integer(rows, hp.nightEnergy);
+            decimal(rows, hp.nightEnergyEur);
+            integer(rows, cp.transferDayKwh);
+            decimal(rows, cp.transferDayTotal);
+            integer(rows, cp.transferNightKwh);
+            decimal(rows, cp.transferNightTotal);
+            decimal(rows, cp.tax);
+            rows.endRow();
         });
+        METRICS.render.observeNanos(System.nanoTime() - started);
+    }
+
+    private static void integer(RowWriter rows, int value) {
+        if (value == 0) {
+            rows.empty();
+        } else {
+            rows.integer(value);
+        }
+    }
+
+    private static void decimal(RowWriter rows, double value) {
+        if (Math.round(value * 100) == 0) {
+            rows.empty();
+        } else {
+            rows.decimal(value);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,149 @@
+package com.devsoap.parsers.composites;
+
+import com.devsoap.parsers.caruna.CarunaParser;
+import com.devsoap.parsers.helen.HelenParser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CarunaHelenParserTest {
+
+    private static final String HEADER = "Kuukausi,Perusmaksu (energia),Perusmaksu (siirto),Päiväenergia (kWh),"
+            + "Päiväenergia (EUR),Yöenergia (kWh),Yöenergia (EUR),Päiväsiirto (kWh),Päiväsiirto (EUR),"
+            + "Yösiirto (kWh),Yösiirto (EUR),Vero";
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2, runnable -> {
+        var thread = new Thread(runnable, "test-reader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void leavesZeroValuesEmpty() {
+        var caruna = new CarunaParser.Period();
+        caruna.basicPay = 4.63;
+        caruna.transferDayKwh = 351;
+        caruna.transferDayTotal = 10.46;
+        var helen = new HelenParser.Period();
+        helen.basicPay = 3.95;
+        helen.nightEnergy = 434;
+        helen.nightEnergyEur = 26.52;
+
+        assertEquals(String.join("\n", HEADER,
+                "Tammikuu,3.95,4.63,,,434,26.52,351,10.46,,,",
+                ""), print(Map.of("Tammikuu", caruna), Map.of("Tammikuu", helen)));
+    }
+
+    @Test
+    void leavesColumnsOfMissingPeriodEmpty() {
+        var caruna = new CarunaParser.Period();
+        caruna.basicPay = 4.63;
+        caruna.tax = 19.33;
+        var helen = new HelenParser.Period();
+        helen.basicPay = 3.95;
+        helen.dayEnergy = 456;
+        helen.dayEnergyEur = 33.06;
+
+        assertEquals(String.join("\n", HEADER,
+                "Tammikuu,,4.63,,,,,,,,,19.33",
+                ""), print(Map.of("Tammikuu", caruna), Map.of()));
+        assertEquals(String.join("\n", HEADER,
+                "Maaliskuu,3.95,,456,33.06,,,,,,,",
+                ""), print(Map.of(), Map.of("Maaliskuu", helen)));
+    }
+
+    @Test
+    void readsHelenOnGivenExecutor() {
+        var threads = ConcurrentHashMap.<String>newKeySet();
+        var periods = CarunaHelenParser.parse(
+                () -> carunaPeriods(threads),
+                () -> helenReadings(threads),
+                executor);
+
+        assertEquals(Set.of(Thread.currentThread().getName() + ":caruna", "test-reader:helen"), threads);
+        assertSplitsEnergy(periods);
+    }
+
+    @Test
+    void parsesBothInvoicesOfPairOnGivenExecutor() {
+        var threads = ConcurrentHashMap.<String>newKeySet();
+        var periods = CarunaHelenParser.parseAsync(
+                () -> carunaPeriods(threads),
+                () -> helenReadings(threads),
+                executor).join();
+
+        assertEquals(Set.of("test-reader:caruna", "test-reader:helen"), threads);
+        assertSplitsEnergy(periods);
+    }
+
+    @Test
+    void failedPairCompletesExceptionally() {
+        var failure = new IllegalArgumentException("Not a Caruna invoice");
+        var pair = CarunaHelenParser.parseAsync(() -> {
+            throw failure;
+        }, () -> helenReadings(ConcurrentHashMap.newKeySet()), executor);
+
+        var thrown = assertThrows(CompletionException.class, pair::join);
+        assertSame(failure, thrown.getCause());
+    }
+
+    @Test
+    void parseRethrowsHelenFailure() {
+        var failure = new IllegalArgumentException("Not a Helen invoice");
+        var thrown = assertThrows(IllegalArgumentException.class, () -> CarunaHelenParser.parse(
+                () -> carunaPeriods(ConcurrentHashMap.newKeySet()),
+                () -> {
+                    throw failure;
+                },
+                executor));
+        assertSame(failure, thrown);
+    }
+
+    private static Map<String, CarunaParser.Period> carunaPeriods(Set<String> threads) {
+        threads.add(Thread.currentThread().getName() + ":caruna");
+        var period = new CarunaParser.Period();
+        period.transferDayKwh = 600;
+        period.transferNightKwh = 400;
+        return Map.of("Tammikuu", period);
+    }
+
+    private static HelenParser.Readings helenReadings(Set<String> threads) {
+        threads.add(Thread.currentThread().getName() + ":helen");
+        var reading = new HelenParser.Reading();
+        reading.totalEnergy = 1000;
+        reading.eurPerKwh = 0.1;
+        var readings = new HelenParser.Readings();
+        readings.months.put("Tammikuu", reading);
+        return readings;
+    }
+
+    private static void assertSplitsEnergy(CarunaHelenParser.Periods periods) {
+        var helen = periods.helen.get("Tammikuu");
+        assertEquals(600, helen.dayEnergy);
+        assertEquals(400, helen.nightEnergy);
+        assertEquals(60.0, helen.dayEnergyEur, 1e-9);
+        assertEquals(400, periods.caruna.get("Tammikuu").transferNightKwh);
+    }
+
+    private static String print(Map<String, CarunaParser.Period> caruna, Map<String, HelenParser.Period> helen) {
+        var output = new ByteArrayOutputStream();
+        CarunaHelenParser.print(caruna, helen, new PrintStream(output, true, StandardCharsets.UTF_8));
+        return output.toString(StandardCharsets.UTF_8);
+    }
+}
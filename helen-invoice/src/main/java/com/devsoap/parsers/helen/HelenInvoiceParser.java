@@ -0,0 +1,60 @@
+package com.devsoap.parsers.helen;
+
+import com.devsoap.parsers.commons.DocumentSample;
+import com.devsoap.parsers.commons.EnergyReport;
+import com.devsoap.parsers.commons.InvoiceParser;
+import com.devsoap.parsers.commons.MonthlyUsage;
+import com.devsoap.parsers.commons.PdfSource;
+import com.devsoap.parsers.commons.RowSchema;
+import com.devsoap.parsers.commons.RowWriter;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Takes the transfer kWh periods from the optional <code>dayKwh</code> and <code>nightKwh</code> parameters,
+ * in the format of {@link HelenParser#parseKwhPeriods(String)}.
+ */
+public class HelenInvoiceParser implements InvoiceParser<HashMap<String, HelenParser.Period>> {
+
+    @Override
+    public String name() {
+        return HelenParser.class.getSimpleName();
+    }
+
+    @Override
+    public int sniff(DocumentSample sample) {
+        return sample.score("helen");
+    }
+
+    @Override
+    public HashMap<String, HelenParser.Period> parse(PdfSource file, Map<String, String> parameters) {
+        return new HashMap<>(HelenParser.parse(file, kwhPeriods(parameters.get("dayKwh")),
+                kwhPeriods(parameters.get("nightKwh"))));
+    }
+
+    @Override
+    public RowSchema columns() {
+        return EnergyReport.COLUMNS;
+    }
+
+    @Override
+    public void write(HashMap<String, HelenParser.Period> periods, RowWriter rows) {
+        HelenParser.write(periods, rows);
+    }
+
+    @Override
+    public List<MonthlyUsage> usage(HashMap<String, HelenParser.Period> periods) {
+        return HelenParser.usage(periods);
+    }
+
+    @Override
+    public String reportName() {
+        return "helen-report";
+    }
+
+    private static Map<String, Integer> kwhPeriods(String kwhPeriods) {
+        return kwhPeriods == null || kwhPeriods.isBlank() ? Map.of() : HelenParser.parseKwhPeriods(kwhPeriods);
+    }
+}
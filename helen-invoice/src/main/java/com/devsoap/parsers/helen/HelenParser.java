@@ -1,17 +1,22 @@
 package com.devsoap.parsers.helen;
 
-import com.itextpdf.kernel.pdf.PdfDocument;
-import com.itextpdf.kernel.pdf.PdfReader;
-import com.itextpdf.kernel.pdf.canvas.parser.PdfTextExtractor;
+import com.devsoap.parsers.commons.EnergyReport;
+import com.devsoap.parsers.commons.FinnishFields;
+import com.devsoap.parsers.commons.LineClassifier;
+import com.devsoap.parsers.commons.MonthlyUsage;
+import com.devsoap.parsers.commons.OutputFormat;
+import com.devsoap.parsers.commons.PageLayout;
+import com.devsoap.parsers.commons.ParserMetrics;
+import com.devsoap.parsers.commons.PdfSource;
+import com.devsoap.parsers.commons.RowWriter;
 
 import java.io.IOException;
 import java.io.PrintStream;
+import java.io.Serializable;
 import java.nio.file.Path;
-import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
-import java.time.format.FormatStyle;
-import java.time.format.TextStyle;
 import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -22,20 +27,35 @@ public class HelenParser {
     private static final Pattern ENERGIA_PATTERN = Pattern.compile(
             "energia (\\d\\d?\\.\\d\\d?\\.\\d\\d\\d\\d)-(\\d\\d?\\.\\d\\d?\\.\\d\\d\\d\\d) ([0-9 ]*) kWh (\\d+,\\d\\d) c");
 
+    private static final PageLayout BILLING_ROWS = PageLayout.of("parsers.helen.regions", "0,250,595,592",
+            HelenParser::hasAllMonths, "perusmaksu ", "energia ");
 
-    private static final Locale FI_LOCALE = new Locale("FI", "fi");
-    private static final DateTimeFormatter FI_DATE = DateTimeFormatter
-            .ofLocalizedDate(FormatStyle.SHORT)
-            .withLocale(FI_LOCALE);
+    private static final ParserMetrics METRICS = ParserMetrics.of(HelenParser.class);
 
-    public static class Period {
+    public static class Period implements Serializable {
+        public int year = 0;
+        public int month = 0;
         public double basicPay = 0.0;
+        public int totalEnergy = 0;
+        public double eurPerKwh = 0.0;
         public int dayEnergy = 0;
         public int nightEnergy = 0;
         public double dayEnergyEur = 0.0;
         public double nightEnergyEur = 0.0;
     }
 
+    public static class Readings implements Serializable {
+        public double basicPay = 0.0;
+        public final Map<String, Reading> months = new HashMap<>();
+    }
+
+    public static class Reading implements Serializable {
+        public int year = 0;
+        public int month = 0;
+        public int totalEnergy = 0;
+        public double eurPerKwh = 0.0;
+    }
+
     public static void main(String[] args) {
         var filename = Path.of(args[0]);
         var daySiirtoPeriods = args[1];
@@ -45,76 +65,195 @@ public class HelenParser {
 
     public static void run(Path helenFile, String daySiirtoKwhPeriods, String nightSiirtoKwhPeriods,
                            PrintStream result) {
-        var daySiirtoKwh = Arrays
-                .stream(daySiirtoKwhPeriods.split(","))
-                .map(period -> period.split(":"))
-                .collect(Collectors.toMap(values -> values[0], values -> Integer.parseInt(values[1])));
-        var nightSiirtoKwh = Arrays
-                .stream(nightSiirtoKwhPeriods.split(","))
+        run(PdfSource.of(helenFile), daySiirtoKwhPeriods, nightSiirtoKwhPeriods, result);
+    }
+
+    public static void run(PdfSource helenFile, String daySiirtoKwhPeriods, String nightSiirtoKwhPeriods,
+                           PrintStream result) {
+        var daySiirtoKwh = parseKwhPeriods(daySiirtoKwhPeriods);
+        var nightSiirtoKwh = parseKwhPeriods(nightSiirtoKwhPeriods);
+        print(parse(helenFile, daySiirtoKwh, nightSiirtoKwh), result);
+    }
+
+    public static Map<String, Integer> parseKwhPeriods(String kwhPeriods) {
+        return Arrays
+                .stream(kwhPeriods.split(","))
                 .map(period -> period.split(":"))
                 .collect(Collectors.toMap(values -> values[0], values -> Integer.parseInt(values[1])));
+    }
 
-        result.println("Kuukausi,Perusmaksu (energia),Perusmaksu (siirto),Päiväenergia (kWh),Päiväenergia " +
-                "(EUR),Yöenergia (kWh),Yöenergia (EUR),Päiväsiirto (kWh),Päiväsiirto (EUR),Yösiirto (kWh)" +
-                ",Yösiirto (EUR),Vero");
+    public static void print(Map<String, Period> periods, PrintStream result) {
+        var rows = RowWriter.open(OutputFormat.CSV, EnergyReport.COLUMNS, result);
+        write(periods, rows);
+        rows.finish();
+    }
 
-        parse(helenFile,daySiirtoKwh, nightSiirtoKwh).forEach((month,period ) -> {
-            var csv = String.format("%s,%.02f,,%d,%.02f,%d,%.02f,,,,", month,
-                    period.basicPay, period.dayEnergy, period.dayEnergyEur,period.nightEnergy, period.nightEnergyEur);
-            result.println(csv);
-        });
+    /**
+     * Writes a row of {@link EnergyReport#COLUMNS} per period.
+     */
+    public static void write(Map<String, Period> periods, RowWriter rows) {
+        var started = System.nanoTime();
+        periods.forEach((month,period ) -> rows
+                .text(month).decimal(period.basicPay).empty()
+                .integer(period.dayEnergy).decimal(period.dayEnergyEur)
+                .integer(period.nightEnergy).decimal(period.nightEnergyEur)
+                .empty().empty().empty().empty().empty()
+                .endRow());
+        METRICS.render.observeNanos(System.nanoTime() - started);
+    }
+
+    /**
+     * The consumed kWh and the total of each period, which do not depend on the transfer kWh split.
+     */
+    public static List<MonthlyUsage> usage(Map<String, Period> periods) {
+        return periods.values().stream()
+                .map(p -> new MonthlyUsage(p.year, p.month, p.totalEnergy, p.basicPay + p.totalEnergy * p.eurPerKwh))
+                .collect(Collectors.toList());
     }
 
     public static Map<String, Period> parse(Path file, Map<String, Integer> daySiirtoKwh,
                                             Map<String, Integer> nightSiirtoKwh) {
-        try(var reader = new PdfReader(file.toFile())) {
-            var document = new PdfDocument(reader);
-            var page2 = document.getPage(2);
-            var text = PdfTextExtractor.getTextFromPage(page2);
-            var scanner = new Scanner(text);
-            var periods = new HashMap<String, Period>();
-            var basicPay = 0.0;
-            while(scanner.hasNextLine()) {
-                var line = scanner.nextLine();
-                if(PERUSMAKSU_PATTERN.asPredicate().test(line)) {
-                    var matcher = PERUSMAKSU_PATTERN.matcher(line);
-                    while (matcher.find()) {
-                         basicPay = Double.parseDouble(matcher.group(3).replace(",", "."));
-                    }
-                } else if(ENERGIA_PATTERN.asPredicate().test(line)) {
-                    var matcher = ENERGIA_PATTERN.matcher(line);
-                    while (matcher.find()) {
-                        var month = LocalDate.from( FI_DATE.parse(matcher.group(1)))
-                                .getMonth().getDisplayName(TextStyle.FULL, new Locale("FI","fi"));
-                        month = month.substring(0,1).toUpperCase() + month.substring(1, month.length()-2);
-
-                        var totalEnergy = Integer.parseInt(matcher.group(3)
-                                .replace(" ", ""));
-                        var eurPerKwh = Double.parseDouble(matcher.group(4)
-                                .replace(",", ".")) / 100.0;
-
-                        var nightSiirto = nightSiirtoKwh.getOrDefault(month,0);
-                        var daySriirto = daySiirtoKwh.getOrDefault(month,0);
-                        periods.computeIfAbsent(month, s -> new Period());
-                        periods.computeIfPresent(month, (s,p) -> {
-                            p.dayEnergy = totalEnergy - nightSiirto;
-                            p.dayEnergyEur = p.dayEnergy * eurPerKwh;
-                            p.nightEnergy = totalEnergy - daySriirto;
-                            p.nightEnergyEur = p.nightEnergy * eurPerKwh;
-                            return p;
-                        });
-                    }
-                }
-            }
+        return parse(PdfSource.of(file), daySiirtoKwh, nightSiirtoKwh);
+    }
 
-            var totalBasicPay = basicPay;
-            periods.forEach((month, period) -> {
-                period.basicPay = totalBasicPay / periods.size();
-            });
+    public static Map<String, Period> parse(PdfSource file, Map<String, Integer> daySiirtoKwh,
+                                            Map<String, Integer> nightSiirtoKwh) {
+        return compute(read(file), daySiirtoKwh, nightSiirtoKwh);
+    }
+
+    /**
+     * Hands each period to the consumer once page 2 has been read. Periods can not be handed on earlier as
+     * the basic pay of the invoice is divided over all of its periods.
+     */
+    public static void parse(PdfSource file, Map<String, Integer> daySiirtoKwh,
+                             Map<String, Integer> nightSiirtoKwh, BiConsumer<String, Period> periods) {
+        parse(file, daySiirtoKwh, nightSiirtoKwh).forEach(periods);
+    }
+
+    public static Map<String, Period> parseText(String text, Map<String, Integer> daySiirtoKwh,
+                                                Map<String, Integer> nightSiirtoKwh) {
+        return compute(readText(text), daySiirtoKwh, nightSiirtoKwh);
+    }
 
-            return periods;
+    /**
+     * Reads the invoice without the day and night transfer kWh, so it can be read while the grid invoice
+     * they come from is still being parsed.
+     */
+    public static Readings read(PdfSource file) {
+        var started = System.nanoTime();
+        try(var document = file.openDocument()) {
+            METRICS.open.observeNanos(System.nanoTime() - started);
+            METRICS.pages.observe(document.getNumberOfPages());
+            var extractionStarted = System.nanoTime();
+            var page2 = document.getPage(2);
+            var text = BILLING_ROWS.extractText(page2, METRICS);
+            METRICS.extract.observeNanos(System.nanoTime() - extractionStarted);
+            return readText(text);
         } catch (IOException e) {
+            METRICS.failures.increment();
             throw new RuntimeException(e);
+        } catch (RuntimeException e) {
+            METRICS.failures.increment();
+            throw e;
+        }
+    }
+
+    public static Readings readText(String text) {
+        var started = System.nanoTime();
+        var collector = new ReadingCollector();
+        collector.classifier.classifyLines(text);
+        METRICS.match.observeNanos(System.nanoTime() - started);
+        return collector.readings;
+    }
+
+    /**
+     * Whether the text has an energy row for every month of the basic pay period, so that no rows of the page
+     * were cut off.
+     */
+    public static boolean hasAllMonths(String text) {
+        var check = new MonthCoverage();
+        check.classifier.classifyLines(text);
+        return check.complete();
+    }
+
+    /**
+     * Splits the energy of each month into day and night energy with the transfer kWh of the grid invoice,
+     * and divides the basic pay over the months.
+     */
+    public static Map<String, Period> compute(Readings readings, Map<String, Integer> daySiirtoKwh,
+                                              Map<String, Integer> nightSiirtoKwh) {
+        var periods = new HashMap<String, Period>();
+        readings.months.forEach((month, reading) -> {
+            int nightSiirto = nightSiirtoKwh.getOrDefault(month,0);
+            int daySriirto = daySiirtoKwh.getOrDefault(month,0);
+            var p = new Period();
+            p.year = reading.year;
+            p.month = reading.month;
+            p.totalEnergy = reading.totalEnergy;
+            p.eurPerKwh = reading.eurPerKwh;
+            p.dayEnergy = reading.totalEnergy - nightSiirto;
+            p.dayEnergyEur = p.dayEnergy * reading.eurPerKwh;
+            p.nightEnergy = reading.totalEnergy - daySriirto;
+            p.nightEnergyEur = p.nightEnergy * reading.eurPerKwh;
+            p.basicPay = readings.basicPay / readings.months.size();
+            periods.put(month, p);
+        });
+        return periods;
+    }
+
+    private static class ReadingCollector {
+        private final Readings readings = new Readings();
+        private final LineClassifier classifier = new LineClassifier(METRICS)
+                .rule("perusmaksu ", PERUSMAKSU_PATTERN, this::basicPay)
+                .rule("energia ", ENERGIA_PATTERN, this::energy);
+
+        private void basicPay(Matcher matcher, CharSequence line) {
+            readings.basicPay = FinnishFields.decimal(line, matcher.start(3), matcher.end(3));
+        }
+
+        private void energy(Matcher matcher, CharSequence line) {
+            var date = FinnishFields.date(line, matcher.start(1), matcher.end(1));
+            var reading = new Reading();
+            reading.year = FinnishFields.year(date);
+            reading.month = FinnishFields.month(date);
+            reading.totalEnergy = FinnishFields.groupedInteger(line, matcher.start(3), matcher.end(3));
+            reading.eurPerKwh = FinnishFields.decimal(line, matcher.start(4), matcher.end(4)) / 100.0;
+            readings.months.put(FinnishFields.monthKey(FinnishFields.month(date)), reading);
+        }
+    }
+
+    private static class MonthCoverage {
+        private final Set<Integer> months = new HashSet<>();
+        private final LineClassifier classifier = new LineClassifier()
+                .rule("perusmaksu ", PERUSMAKSU_PATTERN, this::basicPay)
+                .rule("energia ", ENERGIA_PATTERN, this::energy);
+        private int firstMonth = -1;
+        private int lastMonth = -1;
+
+        private void basicPay(Matcher matcher, CharSequence line) {
+            firstMonth = monthIndex(line, matcher.start(1), matcher.end(1));
+            lastMonth = monthIndex(line, matcher.start(2), matcher.end(2));
+        }
+
+        private void energy(Matcher matcher, CharSequence line) {
+            months.add(monthIndex(line, matcher.start(1), matcher.end(1)));
+        }
+
+        private boolean complete() {
+            if (firstMonth < 0 || lastMonth < firstMonth) {
+                return false;
+            }
+            for (var month = firstMonth; month <= lastMonth; month++) {
+                if (!months.contains(month)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static int monthIndex(CharSequence line, int start, int end) {
+            var date = FinnishFields.date(line, start, end);
+            return FinnishFields.year(date) * 12 + FinnishFields.month(date) - 1;
         }
     }
 }
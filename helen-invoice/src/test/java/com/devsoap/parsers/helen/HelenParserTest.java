@@ -0,0 +1,84 @@
+package com.devsoap.parsers.helen;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HelenParserTest {
+
+    private static final String PAGE_2 = String.join("\n",
+            "Sähkölasku",
+            "perusmaksu 1.1.2021-31.3.2021 3 kk 11,85 e",
+            "energia 1.1.2021-31.1.2021 1 234 kWh 6,11 c/kWh 75,40 e",
+            "energia 1.2.2021-28.2.2021 987 kWh 5,50 c/kWh 54,29 e",
+            "energia 1.3.2021-31.3.2021 456 kWh 7,25 c/kWh 33,06 e",
+            "Yhteensä 174,60 e");
+
+    private static final Map<String, Integer> DAY_SIIRTO_KWH = Map.of("Tammikuu", 800, "Helmikuu", 600);
+    private static final Map<String, Integer> NIGHT_SIIRTO_KWH = Map.of("Tammikuu", 434, "Helmikuu", 387);
+
+    @Test
+    void readsMonths() {
+        var readings = HelenParser.readText(PAGE_2);
+        assertEquals(11.85, readings.basicPay);
+        assertEquals(Set.of("Tammikuu", "Helmikuu", "Maaliskuu"), readings.months.keySet());
+
+        var january = readings.months.get("Tammikuu");
+        assertEquals(2021, january.year);
+        assertEquals(1, january.month);
+        assertEquals(1234, january.totalEnergy);
+        assertEquals(0.0611, january.eurPerKwh, 1e-12);
+
+        var march = readings.months.get("Maaliskuu");
+        assertEquals(3, march.month);
+        assertEquals(456, march.totalEnergy);
+        assertEquals(0.0725, march.eurPerKwh, 1e-12);
+    }
+
+    @Test
+    void splitsEnergyWithTransferKwh() {
+        var periods = HelenParser.parseText(PAGE_2, DAY_SIIRTO_KWH, NIGHT_SIIRTO_KWH);
+        var january = periods.get("Tammikuu");
+        assertEquals(3.95, january.basicPay, 1e-12);
+        assertEquals(1234, january.totalEnergy);
+        assertEquals(800, january.dayEnergy);
+        assertEquals(48.88, january.dayEnergyEur, 1e-9);
+        assertEquals(434, january.nightEnergy);
+        assertEquals(26.5174, january.nightEnergyEur, 1e-9);
+
+        var march = periods.get("Maaliskuu");
+        assertEquals(456, march.dayEnergy);
+        assertEquals(456, march.nightEnergy);
+    }
+
+    @Test
+    void monthsAreCompleteOnlyWithEnergyForEveryMonth() {
+        assertTrue(HelenParser.hasAllMonths(PAGE_2));
+        // Rows cut off at the bottom of the region
+        assertFalse(HelenParser.hasAllMonths(PAGE_2.substring(0, PAGE_2.indexOf("energia 1.3.2021"))));
+        assertFalse(HelenParser.hasAllMonths(PAGE_2.replace("energia 1.2.2021-28.2.2021 987 kWh 5,50 c/kWh 54,29 e\n",
+                "")));
+        assertFalse(HelenParser.hasAllMonths(PAGE_2.replace("perusmaksu ", "")));
+    }
+
+    @Test
+    void printsReport() {
+        var output = new ByteArrayOutputStream();
+        HelenParser.print(HelenParser.parseText(PAGE_2, DAY_SIIRTO_KWH, NIGHT_SIIRTO_KWH),
+                new PrintStream(output, true, StandardCharsets.UTF_8));
+        assertEquals(String.join("\n",
+                "Kuukausi,Perusmaksu (energia),Perusmaksu (siirto),Päiväenergia (kWh),Päiväenergia (EUR),"
+                        + "Yöenergia (kWh),Yöenergia (EUR),Päiväsiirto (kWh),Päiväsiirto (EUR),Yösiirto (kWh),"
+                        + "Yösiirto (EUR),Vero",
+                "Helmikuu,3.95,,600,33.00,387,21.29,,,,,",
+                "Maaliskuu,3.95,,456,33.06,456,33.06,,,,,",
+                "Tammikuu,3.95,,800,48.88,434,26.52,,,,,",
+                ""), output.toString(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,150 @@
+package com.devsoap.parsers.generator;
+
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.layout.Document;
+import com.itextpdf.layout.element.AreaBreak;
+import com.itextpdf.layout.element.Paragraph;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Generates invoices with the same text layout as the real Caruna, Helen and PlugSurfing PDFs, filled with
+ * random but reproducible values. Used for benchmarking and load testing without real invoices.
+ */
+public class SyntheticInvoices {
+
+    public static final int MAX_MONTHS = 12;
+    public static final int SESSIONS_PER_PAGE = 20;
+
+    private static final YearMonth FIRST_MONTH = YearMonth.of(2021, 1);
+    private static final long SEED = 42;
+
+    public static void main(String[] args) throws IOException {
+        var directory = Path.of(args[0]);
+        var pages = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        Files.createDirectories(directory);
+        Files.write(directory.resolve("caruna.pdf"), caruna(MAX_MONTHS, pages));
+        Files.write(directory.resolve("helen.pdf"), helen(MAX_MONTHS, pages));
+        Files.write(directory.resolve("plugsurfing.pdf"), plugSurfing(pages));
+    }
+
+    /**
+     * A Caruna invoice with the billing rows of the given number of months on page 2, padded with filler pages
+     * up to the given page count.
+     */
+    public static byte[] caruna(int months, int pages) {
+        var random = new Random(SEED);
+        var lines = new ArrayList<String>();
+        for (var i = 0; i < Math.min(months, MAX_MONTHS); i++) {
+            var month = FIRST_MONTH.plusMonths(i);
+            var dayKwh = 100 + random.nextInt(400);
+            var nightKwh = 100 + random.nextInt(600);
+            lines.add(String.format("Laskutusjakso %s - %s", fiDate(month.atDay(1)), fiDate(month.atEndOfMonth())));
+            lines.add(String.format("Perusmaksu 1 kk %s €", amount(3 + random.nextDouble() * 5)));
+            lines.add(transferLine("Päiväsiirto", dayKwh, 2.5 + random.nextDouble()));
+            lines.add(transferLine("Yösiirto", nightKwh, 1.2 + random.nextDouble()));
+            lines.add(String.format("Sähkövero %s €", amount((dayKwh + nightKwh) * 0.0224)));
+        }
+        return document("Caruna Oy", "Lasku", List.of("Caruna Oy", "Sähkönsiirtolasku"), lines, pages);
+    }
+
+    /**
+     * A Helen invoice with the energy rows of the given number of months on page 2, padded with filler pages
+     * up to the given page count.
+     */
+    public static byte[] helen(int months, int pages) {
+        var random = new Random(SEED);
+        var count = Math.min(months, MAX_MONTHS);
+        var lines = new ArrayList<String>();
+        lines.add(String.format("perusmaksu %s-%s %d kk %s e",
+                fiDate(FIRST_MONTH.atDay(1)), fiDate(FIRST_MONTH.plusMonths(count - 1).atEndOfMonth()),
+                count, amount(count * 3.95)));
+        for (var i = 0; i < count; i++) {
+            var month = FIRST_MONTH.plusMonths(i);
+            var kwh = 200 + random.nextInt(1800);
+            var cents = 4 + random.nextDouble() * 6;
+            lines.add(String.format("energia %s-%s %s kWh %s c/kWh %s e",
+                    fiDate(month.atDay(1)), fiDate(month.atEndOfMonth()), groupedKwh(kwh), amount(cents),
+                    amount(kwh * cents / 100.0)));
+        }
+        return document("Helen Oy", "Sähkölasku", List.of("Helen Oy", "Sähkölasku"), lines, pages);
+    }
+
+    /**
+     * A PlugSurfing statement with {@link #SESSIONS_PER_PAGE} charging sessions on every page.
+     */
+    public static byte[] plugSurfing(int pages) {
+        var random = new Random(SEED);
+        var output = new ByteArrayOutputStream();
+        try (var pdf = new PdfDocument(new PdfWriter(output)); var document = new Document(pdf)) {
+            info(pdf, "Plugsurfing GmbH", "Statement");
+            var time = FIRST_MONTH.atDay(1).atTime(8, 0);
+            for (var page = 1; page <= pages; page++) {
+                if (page > 1) {
+                    document.add(new AreaBreak());
+                }
+                document.add(line("Plugsurfing GmbH - Charging statement, page " + page));
+                for (var i = 0; i < SESSIONS_PER_PAGE; i++) {
+                    time = time.plusHours(6 + random.nextInt(30));
+                    var kwh = 5 + random.nextDouble() * 40;
+                    var unitPrice = 0.25 + random.nextDouble() * 0.2;
+                    document.add(line(String.format(Locale.ROOT, "%tF %<tR (%02d:%02d:%02d, %.3fkWh)",
+                            time, random.nextInt(4), random.nextInt(60), random.nextInt(60), kwh)));
+                    document.add(line(String.format("1 %s 24%% %s €", amount(unitPrice), amount(kwh * unitPrice))));
+                }
+            }
+        }
+        return output.toByteArray();
+    }
+
+    private static byte[] document(String author, String title, List<String> cover, List<String> billingRows,
+                                   int pages) {
+        var output = new ByteArrayOutputStream();
+        try (var pdf = new PdfDocument(new PdfWriter(output)); var document = new Document(pdf)) {
+            info(pdf, author, title);
+            cover.forEach(text -> document.add(line(text)));
+            document.add(new AreaBreak());
+            billingRows.forEach(text -> document.add(line(text)));
+            for (var page = 3; page <= pages; page++) {
+                document.add(new AreaBreak());
+                for (var i = 0; i < 40; i++) {
+                    document.add(line("Lisätietoja laskusta, rivi " + i));
+                }
+            }
+        }
+        return output.toByteArray();
+    }
+
+    private static void info(PdfDocument pdf, String author, String title) {
+        pdf.getDocumentInfo().setAuthor(author).setCreator(author).setTitle(title);
+    }
+
+    private static Paragraph line(String text) {
+        return new Paragraph(text).setFontSize(8).setMargin(0).setMultipliedLeading(1);
+    }
+
+    private static String transferLine(String name, int kwh, double cents) {
+        return String.format("%s %d kWh %s snt/kWh %s €", name, kwh, amount(cents), amount(kwh * cents / 100.0));
+    }
+
+    private static String fiDate(java.time.LocalDate date) {
+        return date.getDayOfMonth() + "." + date.getMonthValue() + "." + date.getYear();
+    }
+
+    private static String amount(double value) {
+        return String.format(Locale.ROOT, "%.2f", value).replace('.', ',');
+    }
+
+    private static String groupedKwh(int kwh) {
+        return kwh >= 1000 ? (kwh / 1000) + " " + String.format("%03d", kwh % 1000) : Integer.toString(kwh);
+    }
+}
@@ -0,0 +1,65 @@
+package com.devsoap.parsers.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * The latencies and outcomes of the requests to one route. Every latency is kept, so percentiles are exact.
+ */
+class LatencyRecorder {
+
+    private long[] latencies = new long[1024];
+    private int count = 0;
+    private int errors = 0;
+
+    synchronized void record(long latencyNanos, boolean error) {
+        if (count == latencies.length) {
+            latencies = Arrays.copyOf(latencies, latencies.length * 2);
+        }
+        latencies[count++] = latencyNanos;
+        if (error) {
+            errors++;
+        }
+    }
+
+    /**
+     * Adds the requests of another route.
+     */
+    void add(LatencyRecorder other) {
+        var otherLatencies = other.sorted();
+        var otherErrors = other.errors();
+        synchronized (this) {
+            for (var latency : otherLatencies) {
+                record(latency, false);
+            }
+            errors += otherErrors;
+        }
+    }
+
+    synchronized int count() {
+        return count;
+    }
+
+    synchronized int errors() {
+        return errors;
+    }
+
+    /**
+     * The latencies in ascending order.
+     */
+    synchronized long[] sorted() {
+        var sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * The nearest-rank percentile of sorted latencies, 0 if there are none.
+     */
+    static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        var rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+    }
+}
@@ -0,0 +1,301 @@
+package com.devsoap.parsers.loadtest;
+
+import com.devsoap.parsers.api.Api;
+import com.devsoap.parsers.commons.FinnishFields;
+import com.devsoap.parsers.commons.OutputFormat;
+import com.devsoap.parsers.commons.RowSchema;
+import com.devsoap.parsers.commons.RowWriter;
+import com.devsoap.parsers.generator.SyntheticInvoices;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryType;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Drives the parse routes of the REST API with multipart uploads of synthetic invoices and reports
+ * throughput, latency percentiles and error rates per route, and the heap and GC activity of the run.
+ *
+ * The API is started in this JVM unless <code>--url</code> points to a running one, the heap and GC figures
+ * then cover only the load generator. As every request uploads the same documents, the API started here
+ * neither caches parse results nor lets concurrent requests share one parse unless <code>--cache=true</code>.
+ * The test starts once the API reports ready, and requests started during <code>--rampUp</code> are left out
+ * of the results.
+ *
+ * With <code>--rate</code> requests are sent on a fixed schedule, spread over the concurrent clients, and
+ * latency is measured from the time a request was due rather than sent, so a slow server is not hidden by
+ * clients that wait for it. Without a rate every client sends its next request as soon as the previous one
+ * completes.
+ *
+ * Usage: <code>LoadTest [--url=http://host:port] [--port=7070] [--pages=2] [--concurrency=8] [--rate=0]
+ * [--duration=60] [--rampUp=5] [--routes=CarunaParser,HelenParser,CarunaHelenParser,PlugSurfingParser]
+ * [--cache=false] [--format=csv|ndjson]</code>, durations in seconds and the rate in requests per second.
+ */
+public class LoadTest {
+
+    private static final RowSchema COLUMNS = new RowSchema()
+            .text("route", "route")
+            .integer("requests", "requests")
+            .integer("errors", "errors")
+            .decimal("errorRate", "error rate (%)")
+            .decimal("throughput", "throughput (req/s)")
+            .decimal("p50Ms", "p50 (ms)")
+            .decimal("p95Ms", "p95 (ms)")
+            .decimal("p99Ms", "p99 (ms)")
+            .decimal("maxMs", "max (ms)")
+            .freeze();
+
+    private final Map<String, String> options;
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    private static class Route {
+        private final String name;
+        private final Multipart body;
+        private final byte[] content;
+        private final LatencyRecorder latencies = new LatencyRecorder();
+
+        private Route(String name, Multipart body) {
+            this.name = name;
+            this.body = body;
+            this.content = body.build();
+        }
+    }
+
+    public LoadTest(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        var options = new HashMap<String, String>();
+        for (var arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                System.err.println("Unknown argument " + arg);
+                System.exit(1);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        new LoadTest(options).run();
+        System.exit(0);
+    }
+
+    public void run() throws Exception {
+        var url = options.get("url");
+        var inProcess = url == null;
+        if (inProcess) {
+            var port = integer("port", 7070);
+            System.setProperty("parsers.port", Integer.toString(port));
+            if (!Boolean.parseBoolean(options.getOrDefault("cache", "false"))) {
+                // Every request uploads the same documents, measure parsing rather than cache hits
+                System.setProperty("parsers.cache.enabled", "false");
+            }
+            var api = new Thread(() -> Api.main(new String[0]), "api-main");
+            api.setDaemon(true);
+            api.start();
+            url = "http://localhost:" + port;
+        }
+        awaitReady(url);
+
+        var routes = routes(integer("pages", 2));
+        var concurrency = integer("concurrency", 8);
+        var rate = Double.parseDouble(options.getOrDefault("rate", "0"));
+        var rampUpNanos = TimeUnit.SECONDS.toNanos(integer("rampUp", 5));
+        var durationNanos = TimeUnit.SECONDS.toNanos(integer("duration", 60));
+
+        System.err.printf("Sending %s to %s with %d clients%s for %d s%n",
+                routes.stream().map(route -> route.name).collect(Collectors.joining(", ")), url, concurrency,
+                rate > 0 ? " at " + rate + " requests/s" : "", TimeUnit.NANOSECONDS.toSeconds(durationNanos));
+
+        var gcBefore = gcStatistics();
+        resetPeakHeap();
+        var started = System.nanoTime();
+        var measuredFrom = started + rampUpNanos;
+        var end = measuredFrom + durationNanos;
+        var sequence = new AtomicLong();
+        var done = new CountDownLatch(concurrency);
+        var baseUrl = url;
+        for (var i = 0; i < concurrency; i++) {
+            var clientThread = new Thread(() -> {
+                try {
+                    drive(baseUrl, routes, rate, started, measuredFrom, end, sequence);
+                } finally {
+                    done.countDown();
+                }
+            }, "load-client-" + i);
+            clientThread.setDaemon(true);
+            clientThread.start();
+        }
+        done.await();
+        var gcAfter = gcStatistics();
+
+        report(routes, durationNanos);
+        System.err.printf("Heap: peak %d MB, used %d MB of %d MB committed%s%n",
+                peakHeap() / (1024 * 1024),
+                ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / (1024 * 1024),
+                ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getCommitted() / (1024 * 1024),
+                inProcess ? "" : " (load generator only)");
+        for (var collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            var before = gcBefore.getOrDefault(collector.getName(), new long[2]);
+            var after = gcAfter.get(collector.getName());
+            System.err.printf("GC %s: %d collections, %d ms%n", collector.getName(), after[0] - before[0],
+                    after[1] - before[1]);
+        }
+    }
+
+    /**
+     * Sends requests until the end of the test, round robin over the routes. Request <code>n</code> of the whole
+     * test is due <code>n / rate</code> seconds after the start.
+     */
+    private void drive(String url, List<Route> routes, double rate, long started, long measuredFrom, long end,
+                       AtomicLong sequence) {
+        while (true) {
+            var n = sequence.getAndIncrement();
+            var due = rate > 0 ? started + (long) (n * 1e9 / rate) : System.nanoTime();
+            if (due >= end) {
+                return;
+            }
+            var wait = due - System.nanoTime();
+            if (wait > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            var route = routes.get((int) (n % routes.size()));
+            var error = false;
+            try {
+                var response = client.send(HttpRequest.newBuilder(URI.create(url + "/parsers/" + route.name))
+                        .timeout(Duration.ofMinutes(1))
+                        .header("Content-Type", route.body.contentType())
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(route.content))
+                        .build(), HttpResponse.BodyHandlers.discarding());
+                error = response.statusCode() != 200;
+            } catch (IOException e) {
+                error = true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (due >= measuredFrom) {
+                route.latencies.record(System.nanoTime() - due, error);
+            }
+        }
+    }
+
+    private List<Route> routes(int pages) {
+        var caruna = SyntheticInvoices.caruna(SyntheticInvoices.MAX_MONTHS, pages);
+        var helen = SyntheticInvoices.helen(SyntheticInvoices.MAX_MONTHS, pages);
+        var plugSurfing = SyntheticInvoices.plugSurfing(pages);
+        var kwhPeriods = IntStream.rangeClosed(1, 12)
+                .mapToObj(month -> FinnishFields.monthKey(month) + ":" + (100 + month))
+                .collect(Collectors.joining(","));
+
+        var available = new LinkedHashMap<String, Multipart>();
+        available.put("CarunaParser", new Multipart().file("file", "caruna.pdf", caruna));
+        available.put("HelenParser", new Multipart()
+                .file("file", "helen.pdf", helen)
+                .field("dayKwh", kwhPeriods)
+                .field("nightKwh", kwhPeriods));
+        available.put("CarunaHelenParser", new Multipart()
+                .file("helen", "helen.pdf", helen)
+                .file("caruna", "caruna.pdf", caruna));
+        available.put("PlugSurfingParser", new Multipart().file("file", "plugsurfing.pdf", plugSurfing));
+        available.put("auto", new Multipart().file("file", "caruna.pdf", caruna));
+
+        var names = options.getOrDefault("routes", "CarunaParser,HelenParser,CarunaHelenParser,PlugSurfingParser");
+        var routes = new ArrayList<Route>();
+        for (var name : names.split(",")) {
+            var body = available.get(name.trim());
+            if (body == null) {
+                throw new IllegalArgumentException("Unknown route " + name + ", expected one of "
+                        + available.keySet());
+            }
+            routes.add(new Route(name.trim(), body));
+        }
+        return routes;
+    }
+
+    private void report(List<Route> routes, long durationNanos) {
+        var format = OutputFormat.of(options.getOrDefault("format", "csv"), null);
+        var rows = RowWriter.open(format, COLUMNS, System.out);
+        var all = new LatencyRecorder();
+        for (var route : routes) {
+            writeRow(rows, route.name, route.latencies, durationNanos);
+            all.add(route.latencies);
+        }
+        writeRow(rows, "all", all, durationNanos);
+        rows.finish();
+    }
+
+    private static void writeRow(RowWriter rows, String route, LatencyRecorder latencies, long durationNanos) {
+        var sorted = latencies.sorted();
+        var count = latencies.count();
+        rows.text(route)
+                .integer(count)
+                .integer(latencies.errors())
+                .decimal(count == 0 ? 0 : 100.0 * latencies.errors() / count)
+                .decimal(count / (durationNanos / 1e9))
+                .decimal(LatencyRecorder.percentile(sorted, 50) / 1e6)
+                .decimal(LatencyRecorder.percentile(sorted, 95) / 1e6)
+                .decimal(LatencyRecorder.percentile(sorted, 99) / 1e6)
+                .decimal(sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1e6)
+                .endRow();
+    }
+
+    private void awaitReady(String url) throws InterruptedException {
+        var deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(5);
+        var ready = HttpRequest.newBuilder(URI.create(url + "/ready")).timeout(Duration.ofSeconds(5)).build();
+        while (System.nanoTime() < deadline) {
+            try {
+                if (client.send(ready, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // Not listening yet
+            }
+            TimeUnit.MILLISECONDS.sleep(250);
+        }
+        throw new IllegalStateException(url + " did not become ready");
+    }
+
+    private int integer(String option, int defaultValue) {
+        return options.containsKey(option) ? Integer.parseInt(options.get(option)) : defaultValue;
+    }
+
+    /**
+     * Collection count and time in ms per collector.
+     */
+    private static Map<String, long[]> gcStatistics() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream().collect(Collectors.toMap(
+                GarbageCollectorMXBean::getName,
+                collector -> new long[] {collector.getCollectionCount(), collector.getCollectionTime()}));
+    }
+
+    private static void resetPeakHeap() {
+        ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .forEach(pool -> pool.resetPeakUsage());
+    }
+
+    private static long peakHeap() {
+        return ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .mapToLong(pool -> pool.getPeakUsage().getUsed())
+                .sum();
+    }
+}
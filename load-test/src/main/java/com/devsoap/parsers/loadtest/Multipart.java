@@ -0,0 +1,44 @@
+package com.devsoap.parsers.loadtest;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * A <code>multipart/form-data</code> request body, built once and sent by every request of a route.
+ */
+class Multipart {
+
+    private final String boundary = "parsers-" + UUID.randomUUID();
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+    Multipart field(String name, String value) {
+        part("Content-Disposition: form-data; name=\"" + name + "\"\r\n\r\n");
+        body.writeBytes(value.getBytes(StandardCharsets.UTF_8));
+        body.writeBytes("\r\n".getBytes(StandardCharsets.US_ASCII));
+        return this;
+    }
+
+    Multipart file(String name, String filename, byte[] content) {
+        part("Content-Disposition: form-data; name=\"" + name + "\"; filename=\"" + filename + "\"\r\n"
+                + "Content-Type: application/pdf\r\n\r\n");
+        body.writeBytes(content);
+        body.writeBytes("\r\n".getBytes(StandardCharsets.US_ASCII));
+        return this;
+    }
+
+    String contentType() {
+        return "multipart/form-data; boundary=" + boundary;
+    }
+
+    byte[] build() {
+        var complete = new ByteArrayOutputStream(body.size() + boundary.length() + 8);
+        complete.writeBytes(body.toByteArray());
+        complete.writeBytes(("--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+        return complete.toByteArray();
+    }
+
+    private void part(String headers) {
+        body.writeBytes(("--" + boundary + "\r\n" + headers).getBytes(StandardCharsets.UTF_8));
+    }
+}
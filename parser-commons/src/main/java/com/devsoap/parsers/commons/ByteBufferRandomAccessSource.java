@@ -0,0 +1,46 @@
+package com.devsoap.parsers.commons;
+
+import com.itextpdf.io.source.IRandomAccessSource;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads a shared buffer with absolute gets only, so several readers can use the same (possibly
+ * memory-mapped) buffer concurrently. Unlike iText's own buffer source, closing does not unmap the buffer.
+ */
+class ByteBufferRandomAccessSource implements IRandomAccessSource {
+
+    private final ByteBuffer buffer;
+
+    ByteBufferRandomAccessSource(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public int get(long position) {
+        if (position >= buffer.limit()) {
+            return -1;
+        }
+        return buffer.get((int) position) & 0xff;
+    }
+
+    @Override
+    public int get(long position, byte[] bytes, int off, int len) {
+        if (position >= buffer.limit()) {
+            return -1;
+        }
+        var count = (int) Math.min(len, buffer.limit() - position);
+        buffer.get((int) position, bytes, off, count);
+        return count;
+    }
+
+    @Override
+    public long length() {
+        return buffer.limit();
+    }
+
+    @Override
+    public void close() {
+        // The buffer is owned by the PdfSource
+    }
+}
@@ -0,0 +1,123 @@
+package com.devsoap.parsers.commons;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * A compact binary format that stores the values column by column. Rows are kept in memory and written by
+ * {@link #finish()}, which suits the few hundred rows of an invoice.
+ *
+ * <pre>
+ * "PPC1"
+ * varint column count, then per column: varint length + UTF-8 key, byte type (0 text, 1 integer, 2 decimal)
+ * varint row count
+ * per column: empty value bitmap of (rows + 7) / 8 bytes, bit i of byte i / 8 set for an empty row i,
+ *             then the values that are not empty:
+ *             text as varint length + UTF-8, integer as zigzag varint, decimal as zigzag varint of cents
+ * </pre>
+ */
+class ColumnarRowWriter extends RowWriter {
+
+    private static final byte[] MAGIC = {'P', 'P', 'C', '1'};
+
+    private final DataOutputStream output;
+    private final List<Column> columns = new ArrayList<>();
+    private int rows = 0;
+
+    private static class Column {
+        private final BitSet empty = new BitSet();
+        private final List<String> texts = new ArrayList<>();
+        private long[] numbers = new long[16];
+        private int numberCount = 0;
+
+        private void add(long number) {
+            if (numberCount == numbers.length) {
+                numbers = Arrays.copyOf(numbers, numbers.length * 2);
+            }
+            numbers[numberCount++] = number;
+        }
+    }
+
+    ColumnarRowWriter(RowSchema schema, OutputStream output) {
+        super(schema);
+        this.output = new DataOutputStream(new BufferedOutputStream(output));
+        for (var column = 0; column < schema.size(); column++) {
+            columns.add(new Column());
+        }
+    }
+
+    @Override
+    protected void writeText(int column, String value) {
+        columns.get(column).texts.add(value);
+    }
+
+    @Override
+    protected void writeInteger(int column, long value) {
+        columns.get(column).add(value);
+    }
+
+    @Override
+    protected void writeDecimal(int column, long cents) {
+        columns.get(column).add(cents);
+    }
+
+    @Override
+    protected void writeEmpty(int column) {
+        columns.get(column).empty.set(rows);
+    }
+
+    @Override
+    protected void writeEndRow() {
+        rows++;
+    }
+
+    @Override
+    public void finish() {
+        try {
+            output.write(MAGIC);
+            writeVarint(schema.size());
+            for (var column = 0; column < schema.size(); column++) {
+                writeBytes(schema.key(column).getBytes(StandardCharsets.UTF_8));
+                output.writeByte(schema.type(column).ordinal());
+            }
+            writeVarint(rows);
+            for (var column = 0; column < schema.size(); column++) {
+                var values = columns.get(column);
+                output.write(Arrays.copyOf(values.empty.toByteArray(), (rows + 7) / 8));
+                if (schema.type(column) == RowSchema.Type.TEXT) {
+                    for (var text : values.texts) {
+                        writeBytes(text.getBytes(StandardCharsets.UTF_8));
+                    }
+                } else {
+                    for (var i = 0; i < values.numberCount; i++) {
+                        writeVarint((values.numbers[i] << 1) ^ (values.numbers[i] >> 63));
+                    }
+                }
+            }
+            output.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        writeVarint(bytes.length);
+        output.write(bytes);
+    }
+
+    private void writeVarint(long value) throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            output.writeByte((int) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        output.writeByte((int) value);
+    }
+}
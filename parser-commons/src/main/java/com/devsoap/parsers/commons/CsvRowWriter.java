@@ -0,0 +1,66 @@
+package com.devsoap.parsers.commons;
+
+import java.io.OutputStream;
+
+/**
+ * CSV with a header row of the column labels, unless it is left out. Empty values are left blank and decimals
+ * always use a dot.
+ */
+class CsvRowWriter extends TextRowWriter {
+
+    CsvRowWriter(RowSchema schema, OutputStream output, boolean header) {
+        super(schema, output);
+        if (header) {
+            for (var column = 0; column < schema.size(); column++) {
+                separator(column);
+                appendText(schema.label(column));
+            }
+            writeEndRow();
+        }
+    }
+
+    @Override
+    protected void writeText(int column, String value) {
+        separator(column);
+        appendText(value);
+    }
+
+    @Override
+    protected void writeInteger(int column, long value) {
+        separator(column);
+        row.append(value);
+    }
+
+    @Override
+    protected void writeDecimal(int column, long cents) {
+        separator(column);
+        appendDecimal(row, cents);
+    }
+
+    @Override
+    protected void writeEmpty(int column) {
+        separator(column);
+    }
+
+    private void separator(int column) {
+        if (column > 0) {
+            row.append(',');
+        }
+    }
+
+    private void appendText(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            row.append(value);
+            return;
+        }
+        row.append('"');
+        for (var i = 0; i < value.length(); i++) {
+            var c = value.charAt(i);
+            if (c == '"') {
+                row.append('"');
+            }
+            row.append(c);
+        }
+        row.append('"');
+    }
+}
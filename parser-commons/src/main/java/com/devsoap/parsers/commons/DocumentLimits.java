@@ -0,0 +1,59 @@
+package com.devsoap.parsers.commons;
+
+import com.itextpdf.kernel.pdf.MemoryLimitsAwareHandler;
+import com.itextpdf.kernel.pdf.ReaderProperties;
+
+/**
+ * How large a document {@link PdfSource} opens. Every document is checked against the limits on its own:
+ * its size in bytes before it is read, its page count when it is opened and the decompressed size of its
+ * streams, single and summed, while it is read. A document over a limit fails with a
+ * {@link DocumentTooLargeException} instead of filling the heap.
+ */
+public final class DocumentLimits {
+
+    public static final DocumentLimits DEFAULT = fromSystemProperties();
+
+    public final long maxBytes;
+    public final int maxPages;
+    public final int maxStreamBytes;
+    public final long maxDecompressedBytes;
+
+    public DocumentLimits(long maxBytes, int maxPages, int maxStreamBytes, long maxDecompressedBytes) {
+        this.maxBytes = maxBytes;
+        this.maxPages = maxPages;
+        this.maxStreamBytes = maxStreamBytes;
+        this.maxDecompressedBytes = maxDecompressedBytes;
+    }
+
+    public static DocumentLimits fromSystemProperties() {
+        return new DocumentLimits(
+                Long.getLong("parsers.limits.bytes", 32L * 1024 * 1024),
+                Integer.getInteger("parsers.limits.pages", 1000),
+                Integer.getInteger("parsers.limits.streamBytes", 64 * 1024 * 1024),
+                Long.getLong("parsers.limits.decompressedBytes", 512L * 1024 * 1024));
+    }
+
+    void checkBytes(long bytes) {
+        if (bytes > maxBytes) {
+            throw new DocumentTooLargeException("Document of " + bytes + " bytes exceeds the limit of "
+                    + maxBytes + " bytes");
+        }
+    }
+
+    void checkPages(int pages) {
+        if (pages > maxPages) {
+            throw new DocumentTooLargeException("Document of " + pages + " pages exceeds the limit of "
+                    + maxPages + " pages");
+        }
+    }
+
+    /**
+     * Reader properties with a new memory limits handler, the handler sums the streams of one document.
+     */
+    ReaderProperties readerProperties() {
+        var handler = new MemoryLimitsAwareHandler()
+                .setMaxSizeOfSingleDecompressedPdfStream(maxStreamBytes)
+                .setMaxSizeOfDecompressedPdfStreamsSum(maxDecompressedBytes);
+        return new ReaderProperties().setMemoryLimitsAwareHandler(handler);
+    }
+}
@@ -0,0 +1,55 @@
+package com.devsoap.parsers.commons;
+
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.canvas.parser.PdfTextExtractor;
+
+import java.util.Locale;
+
+/**
+ * The cheap to read parts of a document parsers are detected from: the document information dictionary and,
+ * if that is not enough, the text of page 1.
+ */
+public final class DocumentSample {
+
+    private static final int METADATA_SCORE = 100;
+
+    private final String metadata;
+    private final String text;
+
+    private DocumentSample(String metadata, String text) {
+        this.metadata = metadata;
+        this.text = text;
+    }
+
+    static DocumentSample metadata(PdfDocument document) {
+        var info = document.getDocumentInfo();
+        var metadata = new StringBuilder();
+        for (var value : new String[]{ info.getTitle(), info.getAuthor(), info.getSubject(), info.getKeywords(),
+                info.getCreator(), info.getProducer() }) {
+            if (value != null) {
+                metadata.append(value).append('\n');
+            }
+        }
+        return new DocumentSample(metadata.toString().toLowerCase(Locale.ROOT), "");
+    }
+
+    DocumentSample withFirstPage(PdfDocument document) {
+        var firstPage = PdfTextExtractor.getTextFromPage(document.getPage(1));
+        return new DocumentSample(metadata, firstPage.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Scores how strongly the sample points to a vendor: 100 if the metadata mentions the
+     * keyword, plus one for every mention in the page text.
+     *
+     * @param keyword
+     *      a lower case keyword, usually the vendor name
+     */
+    public int score(String keyword) {
+        var score = metadata.contains(keyword) ? METADATA_SCORE : 0;
+        for (var i = text.indexOf(keyword); i >= 0; i = text.indexOf(keyword, i + keyword.length())) {
+            score++;
+        }
+        return score;
+    }
+}
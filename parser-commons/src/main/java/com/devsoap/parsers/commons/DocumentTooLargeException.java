@@ -0,0 +1,35 @@
+package com.devsoap.parsers.commons;
+
+import com.itextpdf.kernel.pdf.MemoryLimitsAwareException;
+
+import java.util.Optional;
+
+/**
+ * A document exceeds one of the {@link DocumentLimits}.
+ */
+public class DocumentTooLargeException extends RuntimeException {
+
+    public DocumentTooLargeException(String message) {
+        super(message);
+    }
+
+    /**
+     * The limit a failure was caused by, if any. Parsers wrap the failures of reading a document, and iText
+     * reports exceeded stream limits with its own exception, so the whole cause chain is searched.
+     */
+    public static Optional<DocumentTooLargeException> causeOf(Throwable failure) {
+        for (var cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DocumentTooLargeException) {
+                return Optional.of((DocumentTooLargeException) cause);
+            }
+            if (cause instanceof MemoryLimitsAwareException) {
+                var exceeded = new DocumentTooLargeException("Document exceeds the limit of "
+                        + DocumentLimits.DEFAULT.maxStreamBytes + " bytes per decompressed stream or "
+                        + DocumentLimits.DEFAULT.maxDecompressedBytes + " bytes of decompressed streams");
+                exceeded.initCause(cause);
+                return Optional.of(exceeded);
+            }
+        }
+        return Optional.empty();
+    }
+}
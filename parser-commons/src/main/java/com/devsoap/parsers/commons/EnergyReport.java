@@ -0,0 +1,27 @@
+package com.devsoap.parsers.commons;
+
+/**
+ * The monthly energy and transfer report shared by the Caruna, Helen and combined Caruna/Helen parsers. Each
+ * parser fills in the columns of its own invoice and leaves the rest empty.
+ */
+public final class EnergyReport {
+
+    public static final RowSchema COLUMNS = new RowSchema()
+            .text("month", "Kuukausi")
+            .decimal("basicPayEnergy", "Perusmaksu (energia)")
+            .decimal("basicPayTransfer", "Perusmaksu (siirto)")
+            .integer("dayEnergyKwh", "Päiväenergia (kWh)")
+            .decimal("dayEnergyEur", "Päiväenergia (EUR)")
+            .integer("nightEnergyKwh", "Yöenergia (kWh)")
+            .decimal("nightEnergyEur", "Yöenergia (EUR)")
+            .integer("transferDayKwh", "Päiväsiirto (kWh)")
+            .decimal("transferDayEur", "Päiväsiirto (EUR)")
+            .integer("transferNightKwh", "Yösiirto (kWh)")
+            .decimal("transferNightEur", "Yösiirto (EUR)")
+            .decimal("tax", "Vero")
+            .freeze();
+
+    private EnergyReport() {
+        // Constants only
+    }
+}
@@ -0,0 +1,224 @@
+package com.devsoap.parsers.commons;
+
+import java.time.DateTimeException;
+import java.time.Month;
+import java.time.format.TextStyle;
+import java.util.Locale;
+
+/**
+ * Reads the numbers and dates found on Finnish invoices directly from a region of a {@link CharSequence},
+ * typically a matcher group of a line, without creating intermediate strings or formatter objects.
+ *
+ * All methods are stateless and thread safe.
+ */
+public final class FinnishFields {
+
+    private static final Locale FI_LOCALE = new Locale("FI", "fi");
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final long MAX_EXACT_DIGITS = 1L << 53;
+
+    private static final String[] MONTH_KEYS = new String[12];
+    private static final int FIRST_CACHED_YEAR = 2000;
+    private static final String[] YEAR_MONTH_KEYS = new String[100 * 12];
+
+    static {
+        for (var month : Month.values()) {
+            var name = month.getDisplayName(TextStyle.FULL, FI_LOCALE);
+            MONTH_KEYS[month.ordinal()] = name.substring(0,1).toUpperCase() + name.substring(1, name.length()-2);
+        }
+        for (var i = 0; i < YEAR_MONTH_KEYS.length; i++) {
+            YEAR_MONTH_KEYS[i] = (FIRST_CACHED_YEAR + i / 12) + "-" + (i % 12 + 1);
+        }
+    }
+
+    private FinnishFields() {
+        // Utility class
+    }
+
+    /**
+     * Reads a decimal number such as <code>12,34</code> or <code>12.34</code>. The result is identical to
+     * {@link Double#parseDouble(String)} of the same digits, surrounding whitespace is ignored.
+     */
+    public static double decimal(CharSequence text, int start, int end) {
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        long digits = 0;
+        var fractionDigits = -1;
+        var significant = 0;
+        for (var i = start; i < end; i++) {
+            var c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits = digits * 10 + (c - '0');
+                if (digits != 0) {
+                    significant++;
+                }
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+            } else if ((c == ',' || c == '.') && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else {
+                throw numberFormatException(text, start, end);
+            }
+            if (significant > 15) {
+                return Double.parseDouble(text.subSequence(start, end).toString().replace(',', '.'));
+            }
+        }
+        if (end - start == 0 || (fractionDigits < 0 ? end - start : end - start - 1) == 0) {
+            throw numberFormatException(text, start, end);
+        }
+        if (fractionDigits <= 0) {
+            return digits;
+        }
+        if (digits < MAX_EXACT_DIGITS && fractionDigits < POWERS_OF_TEN.length) {
+            // Both operands are exact, so the division is correctly rounded like parseDouble
+            return digits / POWERS_OF_TEN[fractionDigits];
+        }
+        return Double.parseDouble(text.subSequence(start, end).toString().replace(',', '.'));
+    }
+
+    /**
+     * Reads a non-negative integer.
+     */
+    public static int integer(CharSequence text, int start, int end) {
+        return groupedInteger(text, start, end, false);
+    }
+
+    /**
+     * Reads a non-negative integer with space separated digit groups, such as <code>1 234</code>.
+     */
+    public static int groupedInteger(CharSequence text, int start, int end) {
+        return groupedInteger(text, start, end, true);
+    }
+
+    /**
+     * Reads a <code>d.M.yyyy</code> date.
+     *
+     * @return the date packed as <code>yyyyMMdd</code>, see {@link #year(int)}, {@link #month(int)} and
+     *      {@link #day(int)}
+     */
+    public static int date(CharSequence text, int start, int end) {
+        var firstDot = indexOf(text, '.', start, end);
+        var secondDot = firstDot < 0 ? -1 : indexOf(text, '.', firstDot + 1, end);
+        if (secondDot < 0) {
+            throw new DateTimeException("Text '" + text.subSequence(start, end) + "' is not a d.M.yyyy date");
+        }
+        var day = integer(text, start, firstDot);
+        var month = integer(text, firstDot + 1, secondDot);
+        var year = integer(text, secondDot + 1, end);
+        if (month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) {
+            throw new DateTimeException("Text '" + text.subSequence(start, end) + "' is not a d.M.yyyy date");
+        }
+        return year * 10000 + month * 100 + day;
+    }
+
+    /**
+     * Same as {@link java.time.YearMonth#lengthOfMonth()} in the proleptic Gregorian calendar.
+     */
+    private static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return year % 4 == 0 && (year % 100 != 0 || year % 400 == 0) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    public static int year(int date) {
+        return date / 10000;
+    }
+
+    public static int month(int date) {
+        return date / 100 % 100;
+    }
+
+    public static int day(int date) {
+        return date % 100;
+    }
+
+    /**
+     * Reads a <code>HH:mm:ss</code> clock time.
+     *
+     * @return the number of seconds since midnight
+     */
+    public static int clockSeconds(CharSequence text, int start, int end) {
+        if (end - start != 8 || text.charAt(start + 2) != ':' || text.charAt(start + 5) != ':') {
+            throw new DateTimeException("Text '" + text.subSequence(start, end) + "' is not a HH:mm:ss time");
+        }
+        var hours = integer(text, start, start + 2);
+        var minutes = integer(text, start + 3, start + 5);
+        var seconds = integer(text, start + 6, end);
+        if (hours > 23 || minutes > 59 || seconds > 59) {
+            throw new DateTimeException("Text '" + text.subSequence(start, end) + "' is not a HH:mm:ss time");
+        }
+        return hours * 3600 + minutes * 60 + seconds;
+    }
+
+    /**
+     * The capitalized Finnish month name used as the month key in reports, e.g. <code>Tammikuu</code>.
+     *
+     * @param month
+     *      the month of year, 1-12
+     */
+    public static String monthKey(int month) {
+        return MONTH_KEYS[month - 1];
+    }
+
+    /**
+     * The <code>yyyy-M</code> key of a month, e.g. <code>2021-3</code>.
+     */
+    public static String yearMonthKey(int year, int month) {
+        var index = (year - FIRST_CACHED_YEAR) * 12 + month - 1;
+        if (index >= 0 && index < YEAR_MONTH_KEYS.length) {
+            return YEAR_MONTH_KEYS[index];
+        }
+        return year + "-" + month;
+    }
+
+    private static int groupedInteger(CharSequence text, int start, int end, boolean grouped) {
+        var value = 0;
+        var digits = 0;
+        for (var i = start; i < end; i++) {
+            var c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (value > (Integer.MAX_VALUE - (c - '0')) / 10) {
+                    throw numberFormatException(text, start, end);
+                }
+                value = value * 10 + (c - '0');
+                digits++;
+            } else if (!grouped || (c != ' ' && c != '\u00a0' && c != '\u202f')) {
+                throw numberFormatException(text, start, end);
+            }
+        }
+        if (digits == 0) {
+            throw numberFormatException(text, start, end);
+        }
+        return value;
+    }
+
+    private static int indexOf(CharSequence text, char c, int start, int end) {
+        for (var i = start; i < end; i++) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static NumberFormatException numberFormatException(CharSequence text, int start, int end) {
+        return new NumberFormatException("For input string: \"" + text.subSequence(start, end) + "\"");
+    }
+}
@@ -0,0 +1,56 @@
+package com.devsoap.parsers.commons;
+
+import java.io.PrintStream;
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A parser for the invoices of one vendor, found through {@link ParserRegistry}.
+ *
+ * Implementations are registered in <code>META-INF/services/com.devsoap.parsers.commons.InvoiceParser</code>
+ * and must be stateless.
+ *
+ * @param <T>
+ *      the parse result, serializable so it can be cached
+ */
+public interface InvoiceParser<T extends Serializable> {
+
+    /**
+     * The name of the parser, e.g. <code>CarunaParser</code>.
+     */
+    String name();
+
+    /**
+     * How likely the sampled document is an invoice of this parser's vendor.
+     *
+     * @return a score where 0 means not at all, see {@link DocumentSample#score(String)}
+     */
+    int sniff(DocumentSample sample);
+
+    /**
+     * @param parameters
+     *      additional, parser specific input, e.g. form fields of a request
+     */
+    T parse(PdfSource file, Map<String, String> parameters);
+
+    /**
+     * The columns of the rows {@link #write(Serializable, RowWriter)} writes.
+     */
+    RowSchema columns();
+
+    void write(T result, RowWriter rows);
+
+    default void print(T result, PrintStream output) {
+        var rows = RowWriter.open(OutputFormat.CSV, columns(), output);
+        write(result, rows);
+        rows.finish();
+    }
+
+    List<MonthlyUsage> usage(T result);
+
+    /**
+     * The file name of the report without an extension, the extension depends on the output format.
+     */
+    String reportName();
+}
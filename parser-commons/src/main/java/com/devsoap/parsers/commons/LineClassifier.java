@@ -0,0 +1,182 @@
+package com.devsoap.parsers.commons;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Classifies text line by line against an ordered list of rules, the first matching rule wins.
+ *
+ * Each rule has a keyword that every match of its pattern contains. The pattern only runs on lines where
+ * the keyword is found, and at most once per line, with a matcher that is reset for each line rather than
+ * created. Lines are not copied out of the text, they are passed to the matchers as a view, so classifying a
+ * line does not allocate unless an action reads a group as a String.
+ *
+ * Per rule, the lines where the keyword was found are counted as matched or missed by the pattern, and lines
+ * no rule matched are counted as unclassified. The counts are kept locally and added to the parser's metrics
+ * at the end of {@link #classifyLines(CharSequence)}.
+ *
+ * A classifier holds matchers and is not thread safe, create one per document.
+ */
+public class LineClassifier {
+
+    @FunctionalInterface
+    public interface Action {
+        /**
+         * Called for every match of the rule's pattern in the line.
+         *
+         * @param matcher
+         *      the matcher positioned on the match
+         * @param line
+         *      the line the matcher is matching, for reading group regions with {@link Matcher#start(int)}
+         *      and {@link Matcher#end(int)}
+         */
+        void matched(Matcher matcher, CharSequence line);
+    }
+
+    private static class Rule {
+        private final String keyword;
+        private final Matcher matcher;
+        private final Action action;
+        private final Metrics.Counter matchedMetric;
+        private final Metrics.Counter missedMetric;
+        private long matched = 0;
+        private long missed = 0;
+
+        private Rule(String keyword, Pattern pattern, Action action, ParserMetrics metrics) {
+            this.keyword = keyword;
+            this.matcher = pattern.matcher("");
+            this.action = action;
+            this.matchedMetric = metrics.ruleMatched(keyword.trim());
+            this.missedMetric = metrics.ruleMissed(keyword.trim());
+        }
+    }
+
+    private final ParserMetrics metrics;
+    private final List<Rule> rules = new ArrayList<>();
+    private final LineView line = new LineView();
+    private long unclassified = 0;
+
+    public LineClassifier() {
+        this(ParserMetrics.NONE);
+    }
+
+    public LineClassifier(ParserMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public LineClassifier rule(String keyword, Pattern pattern, Action action) {
+        rules.add(new Rule(keyword, pattern, action, metrics));
+        return this;
+    }
+
+    /**
+     * Classifies every line of the text.
+     */
+    public void classifyLines(CharSequence text) {
+        var length = text.length();
+        var start = 0;
+        while (start < length) {
+            var end = start;
+            while (end < length && text.charAt(end) != '\n' && text.charAt(end) != '\r') {
+                end++;
+            }
+            line.reset(text, start, end);
+            classify(line);
+            if (end < length - 1 && text.charAt(end) == '\r' && text.charAt(end + 1) == '\n') {
+                end++;
+            }
+            start = end + 1;
+        }
+        publishMetrics();
+    }
+
+    /**
+     * Classifies a single line.
+     *
+     * @return <code>true</code> if a rule matched the line
+     */
+    public boolean classify(CharSequence line) {
+        for (var rule : rules) {
+            if (!contains(line, rule.keyword)) {
+                continue;
+            }
+            var matcher = rule.matcher.reset(line);
+            if (matcher.find()) {
+                rule.matched++;
+                do {
+                    rule.action.matched(matcher, line);
+                } while (matcher.find());
+                return true;
+            }
+            rule.missed++;
+        }
+        unclassified++;
+        return false;
+    }
+
+    private void publishMetrics() {
+        for (var rule : rules) {
+            rule.matchedMetric.add(rule.matched);
+            rule.missedMetric.add(rule.missed);
+            rule.matched = 0;
+            rule.missed = 0;
+        }
+        metrics.unclassifiedLines.add(unclassified);
+        unclassified = 0;
+    }
+
+    static boolean contains(CharSequence text, String keyword) {
+        var first = keyword.charAt(0);
+        var last = text.length() - keyword.length();
+        for (var i = 0; i <= last; i++) {
+            if (text.charAt(i) != first) {
+                continue;
+            }
+            var j = 1;
+            while (j < keyword.length() && text.charAt(i + j) == keyword.charAt(j)) {
+                j++;
+            }
+            if (j == keyword.length()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A reusable window on one line of a larger text.
+     */
+    private static class LineView implements CharSequence {
+        private CharSequence text;
+        private int start;
+        private int end;
+
+        private void reset(CharSequence text, int start, int end) {
+            this.text = text;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return text.charAt(start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return text.subSequence(start + from, start + to);
+        }
+
+        @Override
+        public String toString() {
+            return text.subSequence(start, end).toString();
+        }
+    }
+}
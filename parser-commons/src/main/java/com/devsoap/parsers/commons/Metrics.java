@@ -0,0 +1,195 @@
+package com.devsoap.parsers.commons;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Process wide registry of counters, gauges and histograms, written out in the Prometheus text format by
+ * {@link #scrape()}.
+ *
+ * Metrics are registered once, typically into static fields, and updated lock free. Labels are given as
+ * name-value pairs, registering the same name and labels twice returns the same metric.
+ */
+public final class Metrics {
+
+    public static final double[] SECONDS_BUCKETS = {
+            0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10
+    };
+    public static final double[] BYTES_BUCKETS = {
+            16 * 1024, 64 * 1024, 256 * 1024, 1024 * 1024, 4 * 1024 * 1024, 16 * 1024 * 1024, 64 * 1024 * 1024
+    };
+    public static final double[] COUNT_BUCKETS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000 };
+
+    private static final Map<String, Family> FAMILIES = new ConcurrentSkipListMap<>();
+
+    private Metrics() {
+        // Utility class
+    }
+
+    public static class Counter {
+        private final LongAdder value = new LongAdder();
+
+        public void increment() {
+            value.increment();
+        }
+
+        public void add(long amount) {
+            value.add(amount);
+        }
+
+        public long get() {
+            return value.sum();
+        }
+    }
+
+    public static class Histogram {
+        private final double[] buckets;
+        private final LongAdder[] counts;
+        private final LongAdder count = new LongAdder();
+        private final DoubleAdder sum = new DoubleAdder();
+
+        public Histogram(double[] buckets) {
+            this.buckets = buckets;
+            this.counts = new LongAdder[buckets.length];
+            for (var i = 0; i < counts.length; i++) {
+                counts[i] = new LongAdder();
+            }
+        }
+
+        public void observe(double value) {
+            for (var i = 0; i < buckets.length; i++) {
+                if (value <= buckets[i]) {
+                    counts[i].increment();
+                    break;
+                }
+            }
+            count.increment();
+            sum.add(value);
+        }
+
+        /**
+         * Observes a duration in seconds.
+         */
+        public void observeNanos(long nanos) {
+            observe(nanos / 1e9);
+        }
+
+        public long count() {
+            return count.sum();
+        }
+
+        public double sum() {
+            return sum.sum();
+        }
+    }
+
+    private static class Family {
+        private final String name;
+        private final String help;
+        private final String type;
+        private final Map<String, Object> series = new ConcurrentSkipListMap<>();
+
+        private Family(String name, String help, String type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+    }
+
+    public static Counter counter(String name, String help, String... labels) {
+        return (Counter) family(name, help, "counter").series
+                .computeIfAbsent(labels(labels), l -> new Counter());
+    }
+
+    public static Histogram histogram(String name, String help, double[] buckets, String... labels) {
+        return (Histogram) family(name, help, "histogram").series
+                .computeIfAbsent(labels(labels), l -> new Histogram(buckets));
+    }
+
+    /**
+     * Registers a gauge whose value is read from the supplier when scraped.
+     */
+    public static void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, help, "gauge").series.put(labels(labels), value);
+    }
+
+    /**
+     * Registers a counter that is maintained elsewhere and read from the supplier when scraped.
+     */
+    public static void counter(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, help, "counter").series.put(labels(labels), value);
+    }
+
+    public static String scrape() {
+        var text = new StringBuilder(4096);
+        for (var family : FAMILIES.values()) {
+            text.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+            text.append("# TYPE ").append(family.name).append(' ').append(family.type).append('\n');
+            family.series.forEach((labels, metric) -> {
+                if (metric instanceof Counter) {
+                    sample(text, family.name, labels, ((Counter) metric).get());
+                } else if (metric instanceof DoubleSupplier) {
+                    sample(text, family.name, labels, ((DoubleSupplier) metric).getAsDouble());
+                } else {
+                    histogram(text, family.name, labels, (Histogram) metric);
+                }
+            });
+        }
+        return text.toString();
+    }
+
+    private static Family family(String name, String help, String type) {
+        var family = FAMILIES.computeIfAbsent(name, n -> new Family(name, help, type));
+        if (!family.type.equals(type)) {
+            throw new IllegalArgumentException(name + " is already registered as a " + family.type);
+        }
+        return family;
+    }
+
+    private static void histogram(StringBuilder text, String name, String labels, Histogram histogram) {
+        var separator = labels.isEmpty() ? "" : ",";
+        var cumulative = 0L;
+        for (var i = 0; i < histogram.buckets.length; i++) {
+            cumulative += histogram.counts[i].sum();
+            sample(text, name + "_bucket", labels + separator + "le=\"" + number(histogram.buckets[i]) + "\"",
+                    cumulative);
+        }
+        var count = histogram.count();
+        sample(text, name + "_bucket", labels + separator + "le=\"+Inf\"", count);
+        sample(text, name + "_sum", labels, histogram.sum());
+        sample(text, name + "_count", labels, count);
+    }
+
+    private static void sample(StringBuilder text, String name, String labels, double value) {
+        text.append(name);
+        if (!labels.isEmpty()) {
+            text.append('{').append(labels).append('}');
+        }
+        text.append(' ').append(number(value)).append('\n');
+    }
+
+    private static String number(double value) {
+        return value == Math.rint(value) && !Double.isInfinite(value)
+                ? Long.toString((long) value)
+                : Double.toString(value);
+    }
+
+    private static String labels(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be name-value pairs");
+        }
+        var text = new StringBuilder();
+        for (var i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                text.append(',');
+            }
+            text.append(labels[i]).append("=\"")
+                    .append(labels[i + 1].replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+                    .append('"');
+        }
+        return text.toString();
+    }
+}
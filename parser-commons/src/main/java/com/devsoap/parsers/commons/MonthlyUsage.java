@@ -0,0 +1,20 @@
+package com.devsoap.parsers.commons;
+
+import java.io.Serializable;
+
+/**
+ * The energy and total cost of one calendar month on an invoice, the common denominator of all parse results.
+ */
+public class MonthlyUsage implements Serializable {
+    public final int year;
+    public final int month;
+    public final double kwh;
+    public final double eur;
+
+    public MonthlyUsage(int year, int month, double kwh, double eur) {
+        this.year = year;
+        this.month = month;
+        this.kwh = kwh;
+        this.eur = eur;
+    }
+}
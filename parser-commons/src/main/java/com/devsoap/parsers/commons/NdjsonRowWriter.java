@@ -0,0 +1,72 @@
+package com.devsoap.parsers.commons;
+
+import java.io.OutputStream;
+
+/**
+ * A JSON object per line, keyed by the column keys. Empty values are <code>null</code>.
+ */
+class NdjsonRowWriter extends TextRowWriter {
+
+    NdjsonRowWriter(RowSchema schema, OutputStream output) {
+        super(schema, output);
+    }
+
+    @Override
+    protected void writeText(int column, String value) {
+        key(column);
+        appendString(value);
+    }
+
+    @Override
+    protected void writeInteger(int column, long value) {
+        key(column);
+        row.append(value);
+    }
+
+    @Override
+    protected void writeDecimal(int column, long cents) {
+        key(column);
+        appendDecimal(row, cents);
+    }
+
+    @Override
+    protected void writeEmpty(int column) {
+        key(column);
+        row.append("null");
+    }
+
+    @Override
+    protected void writeEndRow() {
+        row.append('}');
+        super.writeEndRow();
+    }
+
+    private void key(int column) {
+        row.append(column == 0 ? '{' : ',');
+        appendString(schema.key(column));
+        row.append(':');
+    }
+
+    private void appendString(String value) {
+        row.append('"');
+        for (var i = 0; i < value.length(); i++) {
+            var c = value.charAt(i);
+            switch (c) {
+                case '"': row.append("\\\""); break;
+                case '\\': row.append("\\\\"); break;
+                case '\n': row.append("\\n"); break;
+                case '\r': row.append("\\r"); break;
+                case '\t': row.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        row.append("\\u00")
+                                .append(Character.forDigit(c >> 4, 16))
+                                .append(Character.forDigit(c & 0xf, 16));
+                    } else {
+                        row.append(c);
+                    }
+            }
+        }
+        row.append('"');
+    }
+}
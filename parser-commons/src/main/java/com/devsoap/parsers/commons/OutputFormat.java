@@ -0,0 +1,59 @@
+package com.devsoap.parsers.commons;
+
+import java.util.Locale;
+
+/**
+ * The formats a {@link RowWriter} can write.
+ */
+public enum OutputFormat {
+    CSV("text/csv; charset=utf-8", "csv"),
+    NDJSON("application/x-ndjson; charset=utf-8", "ndjson"),
+    /**
+     * A compact binary format that stores the values column by column.
+     */
+    COLUMNAR("application/x-parsers-columnar", "columnar");
+
+    public final String contentType;
+    public final String extension;
+
+    OutputFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    /**
+     * The format named by a <code>format</code> parameter, or else the first format the <code>Accept</code>
+     * header lists. CSV if neither names a known format.
+     */
+    public static OutputFormat of(String format, String accept) {
+        return of(format, accept, CSV);
+    }
+
+    /**
+     * Same as {@link #of(String, String)}, but the default format if neither names a known format.
+     */
+    public static OutputFormat of(String format, String accept, OutputFormat defaultFormat) {
+        if (format != null) {
+            for (var candidate : values()) {
+                if (candidate.extension.equalsIgnoreCase(format)) {
+                    return candidate;
+                }
+            }
+        }
+        if (accept != null) {
+            for (var mediaType : accept.toLowerCase(Locale.ROOT).split(",")) {
+                var type = mediaType.split(";")[0].trim();
+                if (type.equals("text/csv")) {
+                    return CSV;
+                }
+                if (type.equals("application/x-ndjson") || type.equals("application/json")) {
+                    return NDJSON;
+                }
+                if (type.equals("application/x-parsers-columnar")) {
+                    return COLUMNAR;
+                }
+            }
+        }
+        return defaultFormat;
+    }
+}
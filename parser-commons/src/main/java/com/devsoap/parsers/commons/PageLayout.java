@@ -0,0 +1,129 @@
+package com.devsoap.parsers.commons;
+
+import com.itextpdf.kernel.geom.Rectangle;
+import com.itextpdf.kernel.pdf.PdfPage;
+import com.itextpdf.kernel.pdf.canvas.parser.EventType;
+import com.itextpdf.kernel.pdf.canvas.parser.PdfTextExtractor;
+import com.itextpdf.kernel.pdf.canvas.parser.data.IEventData;
+import com.itextpdf.kernel.pdf.canvas.parser.filter.IEventFilter;
+import com.itextpdf.kernel.pdf.canvas.parser.filter.TextRegionEventFilter;
+import com.itextpdf.kernel.pdf.canvas.parser.listener.FilteredTextEventListener;
+import com.itextpdf.kernel.pdf.canvas.parser.listener.LocationTextExtractionStrategy;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/**
+ * The areas of a page a parser reads its lines from, the keywords that text from those areas must contain and
+ * a check that the rows read from it are complete.
+ *
+ * Text chunks outside the areas are dropped by an event filter before they reach the extraction strategy, so
+ * they are never decoded into strings or sorted into lines. If the extracted text is missing any of the
+ * keywords, or the parser finds rows cut off at the edges of the areas, the layout is assumed to have changed
+ * and the whole page is extracted instead.
+ *
+ * Region extraction is off by default, whole pages are extracted unless <code>parsers.extraction.regions</code>
+ * is <code>true</code>. Regions are in PDF points from the bottom left corner of the page, and can be overridden
+ * with a system property of the form <code>x,y,width,height;x,y,width,height</code>.
+ */
+public final class PageLayout {
+
+    private static final boolean ENABLED = Boolean.parseBoolean(
+            System.getProperty("parsers.extraction.regions", "false"));
+
+    private final Rectangle[] regions;
+    private final String[] keywords;
+    private final Predicate<String> complete;
+
+    private PageLayout(Rectangle[] regions, String[] keywords, Predicate<String> complete) {
+        this.regions = regions;
+        this.keywords = keywords;
+        this.complete = complete;
+    }
+
+    /**
+     * @param property
+     *      the system property that overrides the default regions
+     * @param defaultRegions
+     *      the regions as <code>x,y,width,height;...</code>
+     * @param keywords
+     *      text that is found in the regions of a page with the expected layout
+     */
+    public static PageLayout of(String property, String defaultRegions, String... keywords) {
+        return of(property, defaultRegions, text -> true, keywords);
+    }
+
+    /**
+     * @param property
+     *      the system property that overrides the default regions
+     * @param defaultRegions
+     *      the regions as <code>x,y,width,height;...</code>
+     * @param complete
+     *      whether the rows in the text of the regions are complete, i.e. none of them were cut off
+     * @param keywords
+     *      text that is found in the regions of a page with the expected layout
+     */
+    public static PageLayout of(String property, String defaultRegions, Predicate<String> complete,
+                                String... keywords) {
+        return new PageLayout(parseRegions(System.getProperty(property, defaultRegions)), keywords, complete);
+    }
+
+    public String extractText(PdfPage page, ParserMetrics metrics) {
+        if (!ENABLED) {
+            return PdfTextExtractor.getTextFromPage(page);
+        }
+        var text = PdfTextExtractor.getTextFromPage(page,
+                new FilteredTextEventListener(new LocationTextExtractionStrategy(), new AnyRegionFilter(regions)));
+        if (!hasKeywords(text) || !complete.test(text)) {
+            metrics.regionFallbacks.increment();
+            return PdfTextExtractor.getTextFromPage(page);
+        }
+        return text;
+    }
+
+    private boolean hasKeywords(String text) {
+        for (var keyword : keywords) {
+            if (!text.contains(keyword)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Rectangle[] parseRegions(String regions) {
+        return Arrays.stream(regions.split(";"))
+                .map(region -> region.trim().split("\\s*,\\s*"))
+                .map(values -> {
+                    if (values.length != 4) {
+                        throw new IllegalArgumentException("Region '" + String.join(",", values)
+                                + "' is not x,y,width,height");
+                    }
+                    return new Rectangle(Float.parseFloat(values[0]), Float.parseFloat(values[1]),
+                            Float.parseFloat(values[2]), Float.parseFloat(values[3]));
+                })
+                .toArray(Rectangle[]::new);
+    }
+
+    /**
+     * Accepts text that is in any of the regions.
+     */
+    private static class AnyRegionFilter implements IEventFilter {
+        private final TextRegionEventFilter[] filters;
+
+        private AnyRegionFilter(Rectangle[] regions) {
+            this.filters = Arrays.stream(regions)
+                    .map(TextRegionEventFilter::new)
+                    .toArray(TextRegionEventFilter[]::new);
+        }
+
+        @Override
+        public boolean accept(IEventData data, EventType type) {
+            for (var filter : filters) {
+                if (filter.accept(data, type)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.devsoap.parsers.commons;
+
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.canvas.parser.PdfTextExtractor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Extracts the text of every page of a document. Large documents are split into page ranges that are
+ * extracted in parallel, each range with its own {@link PdfDocument}. Pages are still handed to the consumer
+ * one at a time, in page order and on the calling thread, so callers can carry state from one page to the
+ * next.
+ *
+ * Ranges are extracted on a pool shared by all documents, of <code>parsers.extraction.threads</code> threads,
+ * the number of processors by default. A document has at most that many ranges waiting or in progress, so
+ * the work queued on the pool is bounded by the number of documents being parsed.
+ *
+ * Pages are released once their text has been extracted, and documents are opened within their
+ * {@link DocumentLimits}.
+ *
+ * The time to open the document and the time spent extracting text, summed over all ranges, are recorded in
+ * the given parser metrics. Time spent in the consumer is not included.
+ */
+public class PageTextExtractor {
+
+    private static final int PAGES_PER_TASK = Integer.getInteger("parsers.extraction.pagesPerTask", 16);
+    private static final int THREADS = Integer.getInteger("parsers.extraction.threads",
+            Runtime.getRuntime().availableProcessors());
+
+    private static final ThreadPoolExecutor RANGES = rangeExecutor();
+
+    public static void forEachPage(PdfSource source, ObjIntConsumer<String> pageConsumer) throws IOException {
+        forEachPage(source, ParserMetrics.NONE, pageConsumer);
+    }
+
+    public static void forEachPage(PdfSource source, ParserMetrics metrics, ObjIntConsumer<String> pageConsumer)
+            throws IOException {
+        int numberOfPages;
+        var started = System.nanoTime();
+        try (var document = source.openDocument()) {
+            metrics.open.observeNanos(System.nanoTime() - started);
+            numberOfPages = document.getNumberOfPages();
+            metrics.pages.observe(numberOfPages);
+            if (numberOfPages <= PAGES_PER_TASK) {
+                var extractionNanos = 0L;
+                for (var pageIndex = 1; pageIndex <= numberOfPages; pageIndex++) {
+                    var pageStarted = System.nanoTime();
+                    var text = extractAndRelease(document, pageIndex);
+                    extractionNanos += System.nanoTime() - pageStarted;
+                    pageConsumer.accept(text, pageIndex);
+                }
+                metrics.extract.observeNanos(extractionNanos);
+                return;
+            }
+        }
+
+        var extractionNanos = new LongAdder();
+        var inFlight = new ArrayDeque<CompletableFuture<String[]>>();
+        var nextPage = 1;
+        var pageIndex = 1;
+        while (pageIndex <= numberOfPages) {
+            while (nextPage <= numberOfPages && inFlight.size() < THREADS) {
+                var from = nextPage;
+                var to = Math.min(numberOfPages, from + PAGES_PER_TASK - 1);
+                inFlight.add(CompletableFuture.supplyAsync(() -> extractRange(source, from, to, extractionNanos),
+                        RANGES));
+                nextPage = to + 1;
+            }
+            for (var text : await(inFlight.poll())) {
+                pageConsumer.accept(text, pageIndex++);
+            }
+        }
+        metrics.extract.observeNanos(extractionNanos.sum());
+    }
+
+    /**
+     * The number of threads extracting page ranges.
+     */
+    public static int threads() {
+        return THREADS;
+    }
+
+    public static int activeThreads() {
+        return RANGES.getActiveCount();
+    }
+
+    /**
+     * The number of page ranges waiting for a thread.
+     */
+    public static int queuedRanges() {
+        return RANGES.getQueue().size();
+    }
+
+    private static ThreadPoolExecutor rangeExecutor() {
+        var threadCount = new AtomicInteger();
+        var executor = new ThreadPoolExecutor(THREADS, THREADS, 30L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    var thread = new Thread(runnable, "page-extractor-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static String[] extractRange(PdfSource source, int from, int to, LongAdder extractionNanos) {
+        var started = System.nanoTime();
+        try (var document = source.openDocument()) {
+            var texts = new String[to - from + 1];
+            for (var pageIndex = from; pageIndex <= to; pageIndex++) {
+                texts[pageIndex - from] = extractAndRelease(document, pageIndex);
+            }
+            return texts;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            extractionNanos.add(System.nanoTime() - started);
+        }
+    }
+
+    /**
+     * Extracts the text of a page and releases the page's objects, so a long document does not keep every
+     * page it has read in memory.
+     */
+    private static String extractAndRelease(PdfDocument document, int pageIndex) {
+        var page = document.getPage(pageIndex);
+        var text = PdfTextExtractor.getTextFromPage(page);
+        page.getPdfObject().release();
+        return text;
+    }
+
+    private static String[] await(CompletableFuture<String[]> range) throws IOException {
+        try {
+            return range.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            } else if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
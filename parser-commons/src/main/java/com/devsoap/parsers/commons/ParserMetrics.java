@@ -0,0 +1,80 @@
+package com.devsoap.parsers.commons;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The metrics of one parser: time spent in each phase of a parse, document sizes, line classification
+ * results and failures, all labelled with the parser name.
+ */
+public final class ParserMetrics {
+
+    /**
+     * Metrics that are not registered anywhere, for code running outside of a parser.
+     */
+    public static final ParserMetrics NONE = new ParserMetrics(null);
+
+    private static final Map<String, ParserMetrics> PARSERS = new ConcurrentHashMap<>();
+
+    public final Metrics.Histogram open;
+    public final Metrics.Histogram extract;
+    public final Metrics.Histogram match;
+    public final Metrics.Histogram render;
+    public final Metrics.Histogram pages;
+    public final Metrics.Counter unclassifiedLines;
+    public final Metrics.Counter failures;
+    public final Metrics.Counter regionFallbacks;
+
+    private final String parser;
+
+    private ParserMetrics(String parser) {
+        this.parser = parser;
+        this.open = phase("open");
+        this.extract = phase("extract");
+        this.match = phase("match");
+        this.render = phase("render");
+        this.pages = parser == null ? new Metrics.Histogram(Metrics.COUNT_BUCKETS) : Metrics.histogram(
+                "parsers_document_pages", "Pages per parsed document", Metrics.COUNT_BUCKETS, "parser", parser);
+        this.unclassifiedLines = parser == null ? new Metrics.Counter() : Metrics.counter(
+                "parsers_unclassified_lines_total", "Lines no rule matched", "parser", parser);
+        this.failures = parser == null ? new Metrics.Counter() : Metrics.counter(
+                "parsers_failures_total", "Parses that failed with an error", "parser", parser);
+        this.regionFallbacks = parser == null ? new Metrics.Counter() : Metrics.counter(
+                "parsers_region_fallbacks_total", "Pages extracted whole as the layout check failed", "parser", parser);
+    }
+
+    public static ParserMetrics of(Class<?> parser) {
+        return PARSERS.computeIfAbsent(parser.getSimpleName(), ParserMetrics::new);
+    }
+
+    /**
+     * Counts lines where a rule's keyword was found and its pattern matched.
+     */
+    Metrics.Counter ruleMatched(String rule) {
+        return ruleResult(rule, "matched");
+    }
+
+    /**
+     * Counts lines where a rule's keyword was found but its pattern did not match, a rising share of these
+     * usually means the vendor has changed the invoice layout.
+     */
+    Metrics.Counter ruleMissed(String rule) {
+        return ruleResult(rule, "missed");
+    }
+
+    private Metrics.Counter ruleResult(String rule, String result) {
+        if (parser == null) {
+            return new Metrics.Counter();
+        }
+        return Metrics.counter("parsers_rule_lines_total", "Lines containing a rule keyword, by match result",
+                "parser", parser, "rule", rule, "result", result);
+    }
+
+    private Metrics.Histogram phase(String phase) {
+        if (parser == null) {
+            return new Metrics.Histogram(Metrics.SECONDS_BUCKETS);
+        }
+        return Metrics.histogram("parsers_phase_seconds", "Time spent in each phase of a parse",
+                Metrics.SECONDS_BUCKETS, "parser", parser, "phase", phase);
+    }
+}
@@ -0,0 +1,71 @@
+package com.devsoap.parsers.commons;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.ServiceLoader;
+import java.util.stream.Collectors;
+
+/**
+ * The {@link InvoiceParser}s on the classpath, and detection of the parser a document needs.
+ */
+public final class ParserRegistry {
+
+    private static final List<InvoiceParser<?>> PARSERS = ServiceLoader.load(InvoiceParser.class).stream()
+            .map(provider -> (InvoiceParser<?>) provider.get())
+            .collect(Collectors.toUnmodifiableList());
+
+    private static final Metrics.Histogram DETECTION_TIME = Metrics.histogram("parsers_detection_seconds",
+            "Time to detect the parser of a document", Metrics.SECONDS_BUCKETS);
+
+    private ParserRegistry() {
+        // Utility class
+    }
+
+    public static List<InvoiceParser<?>> parsers() {
+        return PARSERS;
+    }
+
+    public static Optional<InvoiceParser<?>> byName(String name) {
+        return PARSERS.stream().filter(parser -> parser.name().equals(name)).findFirst();
+    }
+
+    /**
+     * Picks the parser with the highest score for the document. Only the document information is read at
+     * first, page 1 is extracted only if no parser recognizes the document from that.
+     */
+    public static Optional<InvoiceParser<?>> detect(PdfSource source) throws IOException {
+        var started = System.nanoTime();
+        try (var document = source.openDocument()) {
+            var sample = DocumentSample.metadata(document);
+            var parser = best(sample, "metadata");
+            if (parser.isEmpty() && document.getNumberOfPages() > 0) {
+                parser = best(sample.withFirstPage(document), "firstPage");
+            }
+            if (parser.isEmpty()) {
+                Metrics.counter("parsers_detections_total", "Documents by detected parser and the sample used",
+                        "parser", "none", "sample", "firstPage").increment();
+            }
+            return parser;
+        } finally {
+            DETECTION_TIME.observeNanos(System.nanoTime() - started);
+        }
+    }
+
+    private static Optional<InvoiceParser<?>> best(DocumentSample sample, String stage) {
+        InvoiceParser<?> best = null;
+        var bestScore = 0;
+        for (var parser : PARSERS) {
+            var score = parser.sniff(sample);
+            if (score > bestScore) {
+                best = parser;
+                bestScore = score;
+            }
+        }
+        if (best != null) {
+            Metrics.counter("parsers_detections_total", "Documents by detected parser and the sample used",
+                    "parser", best.name(), "sample", stage).increment();
+        }
+        return Optional.ofNullable(best);
+    }
+}
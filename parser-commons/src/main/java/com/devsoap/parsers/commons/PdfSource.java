@@ -0,0 +1,179 @@
+package com.devsoap.parsers.commons;
+
+import com.itextpdf.io.source.RandomAccessSourceFactory;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.ReaderProperties;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Where the bytes of a PDF document come from. A source can be opened any number of times, each
+ * {@link #open()} returns an independent reader.
+ *
+ * Documents are read within the {@link DocumentLimits#DEFAULT} limits. iText loads objects lazily, as they
+ * are used, so opening a document reads only its cross-reference table and page tree.
+ */
+public abstract class PdfSource {
+
+    public static PdfSource of(Path file) {
+        return new FileSource(file);
+    }
+
+    public static PdfSource of(byte[] content) {
+        return new BytesSource(content);
+    }
+
+    public static PdfSource of(ByteBuffer content) {
+        return new BufferSource(content.slice());
+    }
+
+    public static PdfSource of(InputStream content) throws IOException {
+        return of(content.readAllBytes());
+    }
+
+    private volatile String contentHash;
+
+    /**
+     * @throws DocumentTooLargeException
+     *      if the document is larger than the byte limit, before any of it is read
+     */
+    public PdfReader open() throws IOException {
+        DocumentLimits.DEFAULT.checkBytes(length());
+        return open(DocumentLimits.DEFAULT.readerProperties());
+    }
+
+    /**
+     * Opens the document, closing it again if it has more pages than the page limit.
+     *
+     * @throws DocumentTooLargeException
+     *      if the document is larger than the byte or page limit
+     */
+    public PdfDocument openDocument() throws IOException {
+        var document = new PdfDocument(open());
+        try {
+            DocumentLimits.DEFAULT.checkPages(document.getNumberOfPages());
+        } catch (DocumentTooLargeException e) {
+            document.close();
+            throw e;
+        }
+        return document;
+    }
+
+    protected abstract PdfReader open(ReaderProperties properties) throws IOException;
+
+    public abstract long length();
+
+    protected abstract void digest(MessageDigest digest) throws IOException;
+
+    /**
+     * SHA-256 of the document bytes as a hex string, computed on first use.
+     */
+    public String contentHash() {
+        var hash = contentHash;
+        if (hash == null) {
+            try {
+                var digest = MessageDigest.getInstance("SHA-256");
+                digest(digest);
+                hash = contentHash = String.format("%064x", new BigInteger(1, digest.digest()));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return hash;
+    }
+
+    private static class FileSource extends PdfSource {
+        private final Path file;
+
+        private FileSource(Path file) {
+            this.file = file;
+        }
+
+        @Override
+        protected PdfReader open(ReaderProperties properties) throws IOException {
+            return new PdfReader(file.toString(), properties);
+        }
+
+        @Override
+        public long length() {
+            try {
+                return Files.size(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        protected void digest(MessageDigest digest) throws IOException {
+            try (var content = Files.newInputStream(file)) {
+                var buffer = new byte[8192];
+                int read;
+                while ((read = content.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return file.toString();
+        }
+    }
+
+    private static class BytesSource extends PdfSource {
+        private final byte[] content;
+
+        private BytesSource(byte[] content) {
+            this.content = content;
+        }
+
+        @Override
+        protected PdfReader open(ReaderProperties properties) throws IOException {
+            return new PdfReader(new RandomAccessSourceFactory().createSource(content), properties);
+        }
+
+        @Override
+        public long length() {
+            return content.length;
+        }
+
+        @Override
+        protected void digest(MessageDigest digest) {
+            digest.update(content);
+        }
+    }
+
+    private static class BufferSource extends PdfSource {
+        private final ByteBuffer content;
+
+        private BufferSource(ByteBuffer content) {
+            this.content = content;
+        }
+
+        @Override
+        protected PdfReader open(ReaderProperties properties) throws IOException {
+            return new PdfReader(new ByteBufferRandomAccessSource(content), properties);
+        }
+
+        @Override
+        public long length() {
+            return content.limit();
+        }
+
+        @Override
+        protected void digest(MessageDigest digest) {
+            digest.update(content.duplicate());
+        }
+    }
+}
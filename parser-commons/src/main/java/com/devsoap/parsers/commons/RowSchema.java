@@ -0,0 +1,80 @@
+package com.devsoap.parsers.commons;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The columns of the rows a parser writes with a {@link RowWriter}. Each column has a key, used by the
+ * structured formats, a label for the CSV header and the type of its values.
+ *
+ * Columns are added in order, a schema is not modified once rows are written with it. A shared schema is
+ * {@link #freeze() frozen} once its columns are added.
+ */
+public class RowSchema {
+
+    public enum Type {
+        TEXT,
+        INTEGER,
+        /**
+         * A decimal number with two decimals, e.g. an amount in euros.
+         */
+        DECIMAL
+    }
+
+    private final List<String> keys = new ArrayList<>();
+    private final List<String> labels = new ArrayList<>();
+    private final List<Type> types = new ArrayList<>();
+    private boolean frozen;
+
+    public RowSchema text(String key, String label) {
+        return column(key, label, Type.TEXT);
+    }
+
+    public RowSchema integer(String key, String label) {
+        return column(key, label, Type.INTEGER);
+    }
+
+    public RowSchema decimal(String key, String label) {
+        return column(key, label, Type.DECIMAL);
+    }
+
+    /**
+     * Rejects any further columns.
+     *
+     * @return this schema
+     */
+    public RowSchema freeze() {
+        frozen = true;
+        return this;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    public int size() {
+        return keys.size();
+    }
+
+    public String key(int column) {
+        return keys.get(column);
+    }
+
+    public String label(int column) {
+        return labels.get(column);
+    }
+
+    public Type type(int column) {
+        return types.get(column);
+    }
+
+    private RowSchema column(String key, String label, Type type) {
+        if (frozen) {
+            throw new IllegalStateException("Can not add column " + key + " to a frozen schema");
+        }
+        keys.add(key);
+        labels.add(label);
+        types.add(type);
+        return this;
+    }
+}
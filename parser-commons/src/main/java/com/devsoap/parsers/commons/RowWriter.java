@@ -0,0 +1,166 @@
+package com.devsoap.parsers.commons;
+
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Writes the rows of a parse result to a stream, value by value from primitive fields, without formatting a
+ * row as a string first.
+ *
+ * Values are given in the column order of the {@link RowSchema} and must have the column's type, a row ends
+ * with {@link #endRow()}. {@link #finish()} must be called after the last row, it flushes the output but does
+ * not close it. Write errors are thrown as {@link java.io.UncheckedIOException}s.
+ *
+ * A writer is not thread safe.
+ */
+public abstract class RowWriter {
+
+    private static final double MAX_EXACT_CENTS = 1L << 52;
+
+    protected final RowSchema schema;
+    private int column = 0;
+
+    protected RowWriter(RowSchema schema) {
+        this.schema = schema;
+    }
+
+    public static RowWriter open(OutputFormat format, RowSchema schema, OutputStream output) {
+        return open(format, schema, output, true);
+    }
+
+    /**
+     * @param header
+     *      <code>false</code> to leave out the CSV header, when appending to output that already has one
+     */
+    public static RowWriter open(OutputFormat format, RowSchema schema, OutputStream output, boolean header) {
+        switch (format) {
+            case NDJSON:
+                return new NdjsonRowWriter(schema, output);
+            case COLUMNAR:
+                return new ColumnarRowWriter(schema, output);
+            default:
+                return new CsvRowWriter(schema, output, header);
+        }
+    }
+
+    /**
+     * @param value
+     *      the text, or <code>null</code> for an empty value
+     */
+    public RowWriter text(String value) {
+        var index = next(RowSchema.Type.TEXT);
+        if (value == null) {
+            writeEmpty(index);
+        } else {
+            writeText(index, value);
+        }
+        return this;
+    }
+
+    public RowWriter integer(long value) {
+        writeInteger(next(RowSchema.Type.INTEGER), value);
+        return this;
+    }
+
+    /**
+     * Writes the value rounded half up to two decimals, like <code>String.format("%.02f", value)</code> does,
+     * except that a negative value that rounds to zero is written without a sign.
+     *
+     * @throws IllegalArgumentException
+     *      if the value is not finite
+     */
+    public RowWriter decimal(double value) {
+        writeDecimal(next(RowSchema.Type.DECIMAL), cents(value));
+        return this;
+    }
+
+    /**
+     * Leaves the value of the next column empty, whatever its type.
+     */
+    public RowWriter empty() {
+        if (column >= schema.size()) {
+            throw new IllegalStateException("Row has only " + schema.size() + " columns");
+        }
+        writeEmpty(column++);
+        return this;
+    }
+
+    public void endRow() {
+        if (column != schema.size()) {
+            throw new IllegalStateException("Row ended after " + column + " of " + schema.size() + " columns");
+        }
+        writeEndRow();
+        column = 0;
+    }
+
+    /**
+     * Writes the rows so far to the output. Formats that are only written by {@link #finish()} ignore this.
+     */
+    public void flush() {
+    }
+
+    public abstract void finish();
+
+    protected abstract void writeText(int column, String value);
+
+    protected abstract void writeInteger(int column, long value);
+
+    /**
+     * @param cents
+     *      the value multiplied by 100
+     */
+    protected abstract void writeDecimal(int column, long cents);
+
+    protected abstract void writeEmpty(int column);
+
+    protected abstract void writeEndRow();
+
+    /**
+     * Appends a value in cents as a decimal number with two decimals, e.g. <code>-1.05</code>.
+     */
+    protected static void appendDecimal(StringBuilder text, long cents) {
+        if (cents < 0) {
+            text.append('-');
+            cents = -cents;
+        }
+        var fraction = (int) (cents % 100);
+        text.append(cents / 100).append('.').append((char) ('0' + fraction / 10)).append((char) ('0' + fraction % 10));
+    }
+
+    /**
+     * The value in cents, rounded half up from the shortest decimal that represents the value, which is what
+     * {@link java.util.Formatter} rounds. <code>Math.round(value * 100)</code> gives the same cents unless
+     * <code>value * 100</code> is within a few ulps of half a cent, where the error of the double and of the
+     * multiplication can round it the other way, e.g. 1.005 to 1.00. Only those values take the slow path.
+     */
+    static long cents(double value) {
+        if (!Double.isFinite(value)) {
+            throw new IllegalArgumentException("Decimal value " + value + " is not finite");
+        }
+        var scaled = value * 100;
+        var magnitude = Math.abs(scaled);
+        if (magnitude < MAX_EXACT_CENTS) {
+            var fraction = magnitude - Math.floor(magnitude);
+            if (Math.abs(fraction - 0.5) > 4 * Math.ulp(magnitude)) {
+                return Math.round(scaled);
+            }
+        }
+        try {
+            return BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Decimal value " + value + " is too large", e);
+        }
+    }
+
+    private int next(RowSchema.Type type) {
+        if (column >= schema.size()) {
+            throw new IllegalStateException("Row has only " + schema.size() + " columns");
+        }
+        if (schema.type(column) != type) {
+            throw new IllegalArgumentException("Column " + schema.key(column) + " is " + schema.type(column)
+                    + ", not " + type);
+        }
+        return column++;
+    }
+}
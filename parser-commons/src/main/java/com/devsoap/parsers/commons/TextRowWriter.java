@@ -0,0 +1,54 @@
+package com.devsoap.parsers.commons;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A line per row in UTF-8. The row is collected in a reused buffer and written to the output when it ends.
+ */
+abstract class TextRowWriter extends RowWriter {
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    protected final StringBuilder row = new StringBuilder(256);
+    private final Writer output;
+
+    TextRowWriter(RowSchema schema, OutputStream output) {
+        super(schema);
+        this.output = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    @Override
+    protected void writeEndRow() {
+        row.append('\n');
+        flushRow();
+    }
+
+    @Override
+    public void finish() {
+        flush();
+    }
+
+    @Override
+    public void flush() {
+        try {
+            output.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    protected void flushRow() {
+        try {
+            output.append(row);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        row.setLength(0);
+    }
+}
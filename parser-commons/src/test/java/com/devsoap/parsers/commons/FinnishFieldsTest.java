@@ -0,0 +1,171 @@
+package com.devsoap.parsers.commons;
+
+import org.junit.jupiter.api.Test;
+
+import java.text.NumberFormat;
+import java.text.ParseException;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.Month;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import java.time.format.TextStyle;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the fields against the {@link Double#parseDouble(String)}, {@link NumberFormat} and
+ * {@link DateTimeFormatter} parsing they replaced.
+ */
+class FinnishFieldsTest {
+
+    private static final Locale FI_LOCALE = new Locale("FI", "fi");
+    private static final DateTimeFormatter FI_DATE = DateTimeFormatter
+            .ofLocalizedDate(FormatStyle.SHORT)
+            .withLocale(FI_LOCALE);
+    private static final DateTimeFormatter FI_TIME = DateTimeFormatter.ofPattern("HH:mm:ss").withLocale(FI_LOCALE);
+
+    @Test
+    void decimalEqualsParseDouble() {
+        var random = new Random(42);
+        for (var i = 0; i < 200_000; i++) {
+            var text = new StringBuilder();
+            var integerDigits = 1 + random.nextInt(random.nextBoolean() ? 4 : 18);
+            for (var digit = 0; digit < integerDigits; digit++) {
+                text.append((char) ('0' + random.nextInt(10)));
+            }
+            var fractionDigits = random.nextInt(random.nextBoolean() ? 3 : 12);
+            if (fractionDigits > 0 || random.nextBoolean()) {
+                text.append(random.nextBoolean() ? ',' : '.');
+            }
+            for (var digit = 0; digit < fractionDigits; digit++) {
+                text.append((char) ('0' + random.nextInt(10)));
+            }
+            assertDecimal(text.toString());
+        }
+    }
+
+    @Test
+    void decimalEdgeCases() {
+        for (var text : new String[] {"0", "0,0", "0,00", "00012,50", "12,", "4,63", "10,46", "0,1", "0,3",
+                "1,005", "2,675", "999999999999999,9", "9007199254740993", "123456789012345678,25",
+                "0,0000000000000000000001", "1,23456789012345678901"}) {
+            assertDecimal(text);
+        }
+        assertEquals(12.34, FinnishFields.decimal(" 12,34 ", 0, 7));
+        assertEquals(2.5, FinnishFields.decimal("x 2,50 €", 2, 6));
+    }
+
+    @Test
+    void decimalEqualsNumberFormat() throws ParseException {
+        var format = NumberFormat.getNumberInstance(Locale.FRANCE);
+        var random = new Random(42);
+        for (var i = 0; i < 10_000; i++) {
+            var text = random.nextInt(1000) + "," + String.format("%02d", random.nextInt(100));
+            assertEquals(format.parse(text).doubleValue(), FinnishFields.decimal(text, 0, text.length()), text);
+        }
+    }
+
+    @Test
+    void decimalRejectsInvalidNumbers() {
+        for (var text : new String[] {"", " ", ",", ".", "1,2,3", "1.2,3", "-1", "1e3", "12 €", "a"}) {
+            assertThrows(NumberFormatException.class, () -> FinnishFields.decimal(text, 0, text.length()), text);
+        }
+    }
+
+    @Test
+    void integerReadsDigits() {
+        assertEquals(0, FinnishFields.integer("0", 0, 1));
+        assertEquals(351, FinnishFields.integer("351 kWh", 0, 3));
+        assertEquals(Integer.MAX_VALUE, FinnishFields.integer("2147483647", 0, 10));
+        assertThrows(NumberFormatException.class, () -> FinnishFields.integer("2147483648", 0, 10));
+        assertThrows(NumberFormatException.class, () -> FinnishFields.integer("1 234", 0, 5));
+        assertThrows(NumberFormatException.class, () -> FinnishFields.integer("", 0, 0));
+    }
+
+    @Test
+    void groupedIntegerEqualsParseIntWithoutSpaces() {
+        for (var text : new String[] {"1 234", "1234", "12 345 678", "0", "1 000", "999"}) {
+            assertEquals(Integer.parseInt(text.replace(" ", "")), FinnishFields.groupedInteger(text, 0, text.length()),
+                    text);
+        }
+        assertEquals(1234, FinnishFields.groupedInteger("1\u00a0234", 0, 5));
+        assertEquals(1234, FinnishFields.groupedInteger("1\u202f234", 0, 5));
+        assertEquals(1234, FinnishFields.groupedInteger("energia 1 234 kWh", 8, 13));
+        assertThrows(NumberFormatException.class, () -> FinnishFields.groupedInteger("1,234", 0, 5));
+        assertThrows(NumberFormatException.class, () -> FinnishFields.groupedInteger(" ", 0, 1));
+    }
+
+    @Test
+    void dateEqualsLocalizedDate() {
+        for (var date = LocalDate.of(1999, 1, 1); date.getYear() < 2031; date = date.plusDays(1)) {
+            for (var text : new String[] {
+                    date.getDayOfMonth() + "." + date.getMonthValue() + "." + date.getYear(),
+                    String.format("%02d.%02d.%d", date.getDayOfMonth(), date.getMonthValue(), date.getYear())}) {
+                var expected = LocalDate.from(FI_DATE.parse(text));
+                var packed = FinnishFields.date(text, 0, text.length());
+                assertEquals(expected.getYear(), FinnishFields.year(packed), text);
+                assertEquals(expected.getMonthValue(), FinnishFields.month(packed), text);
+                assertEquals(expected.getDayOfMonth(), FinnishFields.day(packed), text);
+            }
+        }
+        assertEquals(20210131, FinnishFields.date("jakso 31.1.2021 - 28.2.2021", 6, 15));
+    }
+
+    @Test
+    void dateRejectsInvalidDates() {
+        for (var text : new String[] {"1.1", "0.1.2021", "32.1.2021", "1.13.2021", "1.0.2021", "1-1-2021",
+                "a.1.2021", "31.2.2021", "29.2.2021", "31.4.2021", "31.6.2021", "31.9.2021", "31.11.2021",
+                "29.2.1900"}) {
+            assertThrows(RuntimeException.class, () -> FinnishFields.date(text, 0, text.length()), text);
+        }
+    }
+
+    @Test
+    void dateAcceptsLeapDays() {
+        assertEquals(20200229, FinnishFields.date("29.2.2020", 0, 9));
+        assertEquals(20000229, FinnishFields.date("29.2.2000", 0, 9));
+    }
+
+    @Test
+    void clockSecondsEqualsLocalTime() {
+        for (var seconds = 0; seconds < 24 * 3600; seconds++) {
+            var text = LocalTime.ofSecondOfDay(seconds).format(FI_TIME);
+            assertEquals(LocalTime.from(FI_TIME.parse(text)).toSecondOfDay(),
+                    FinnishFields.clockSeconds(text, 0, text.length()), text);
+        }
+    }
+
+    @Test
+    void clockSecondsRejectsInvalidTimes() {
+        for (var text : new String[] {"24:00:00", "12:60:00", "12:00:60", "1:00:00", "12:00", "12-00-00"}) {
+            assertThrows(DateTimeException.class, () -> FinnishFields.clockSeconds(text, 0, text.length()), text);
+        }
+    }
+
+    @Test
+    void monthKeyEqualsDisplayName() {
+        for (var month : Month.values()) {
+            var name = month.getDisplayName(TextStyle.FULL, FI_LOCALE);
+            var expected = name.substring(0, 1).toUpperCase() + name.substring(1, name.length() - 2);
+            assertEquals(expected, FinnishFields.monthKey(month.getValue()));
+        }
+        assertEquals("Tammikuu", FinnishFields.monthKey(1));
+        assertEquals("Joulukuu", FinnishFields.monthKey(12));
+    }
+
+    @Test
+    void yearMonthKeyEqualsFormatter() {
+        var formatter = DateTimeFormatter.ofPattern("yyyy-M");
+        for (var date = LocalDate.of(1990, 1, 1); date.getYear() < 2110; date = date.plusMonths(1)) {
+            assertEquals(formatter.format(date), FinnishFields.yearMonthKey(date.getYear(), date.getMonthValue()));
+        }
+    }
+
+    private static void assertDecimal(String text) {
+        assertEquals(Double.parseDouble(text.replace(",", ".")), FinnishFields.decimal(text, 0, text.length()), text);
+    }
+}
@@ -0,0 +1,165 @@
+package com.devsoap.parsers.commons;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LineClassifierTest {
+
+    private static final Pattern DATE_RANGE = Pattern.compile(
+            "(\\d\\d?\\.\\d\\d?\\.\\d\\d\\d\\d) - (\\d\\d?\\.\\d\\d?\\.\\d\\d\\d\\d)");
+    private static final Pattern BASIC_PAY = Pattern.compile("Perusmaksu.* (\\d*,\\d\\d) (EUR|€)");
+    private static final Pattern DAY_TRANSFER = Pattern.compile(
+            "Päiväsiirto.* (\\d*,\\d\\d) snt.* (\\d*,\\d\\d) (EUR|€)");
+    private static final Pattern AMOUNT = Pattern.compile("(\\d+,\\d\\d) €");
+
+    private static final String[] LINES = {
+            "Laskutusjakso 1.1.2021 - 31.1.2021",
+            "Jakso 1.2.2021 - 28.2.2021 ja 1.3.2021 - 31.3.2021",
+            "Perusmaksu 1 kk 4,63 €",
+            "Perusmaksu ilman summaa",
+            "Päiväsiirto 351 kWh 2,98 snt/kWh 10,46 €",
+            "Päiväsiirto 351 kWh 2,98 snt/kWh 10,46 EUR",
+            "Päiväsiirto - 1.1.2021 - 2.1.2021 2,98 snt 1,00 €",
+            "Yhteensä 1,00 € ja 2,50 €",
+            "Lisätietoja laskusta",
+            "",
+            " - ",
+    };
+
+    @Test
+    void firstMatchingRuleWins() {
+        var matched = new ArrayList<String>();
+        var classifier = new LineClassifier()
+                .rule(" - ", DATE_RANGE, (matcher, line) -> matched.add("range"))
+                .rule("Päiväsiirto", DAY_TRANSFER, (matcher, line) -> matched.add("transfer"));
+
+        assertTrue(classifier.classify("Päiväsiirto - 1.1.2021 - 2.1.2021 2,98 snt 1,00 €"));
+        assertEquals(List.of("range"), matched);
+    }
+
+    @Test
+    void keywordWithoutMatchFallsThroughToNextRule() {
+        var matched = new ArrayList<String>();
+        var classifier = new LineClassifier()
+                .rule("Perusmaksu", BASIC_PAY, (matcher, line) -> matched.add("basicPay"))
+                .rule(" €", AMOUNT, (matcher, line) -> matched.add(matcher.group(1)));
+
+        assertTrue(classifier.classify("Perusmaksu sisältyy hintaan:3,00 €"));
+        assertFalse(classifier.classify("Perusmaksu"));
+        assertEquals(List.of("3,00"), matched);
+    }
+
+    @Test
+    void everyMatchOfLineIsHandled() {
+        var amounts = new ArrayList<String>();
+        new LineClassifier()
+                .rule(" €", AMOUNT, (matcher, line) -> amounts.add(matcher.group(1)))
+                .classifyLines("Yhteensä 1,00 € ja 2,50 €\nAlv 0,60 €");
+        assertEquals(List.of("1,00", "2,50", "0,60"), amounts);
+    }
+
+    @Test
+    void splitsLinesOnAnyLineSeparator() {
+        var lines = new ArrayList<String>();
+        new LineClassifier()
+                .rule("rivi", Pattern.compile("rivi \\d"), (matcher, line) -> lines.add(line.toString()))
+                .classifyLines("rivi 1\nrivi 2\r\nrivi 3\rrivi 4\n\nrivi 5");
+        assertEquals(List.of("rivi 1", "rivi 2", "rivi 3", "rivi 4", "rivi 5"), lines);
+    }
+
+    @Test
+    void groupRegionsMatchGroups() {
+        var values = new ArrayList<String>();
+        new LineClassifier()
+                .rule("Päiväsiirto", DAY_TRANSFER, (matcher, line) -> {
+                    values.add(line.subSequence(matcher.start(1), matcher.end(1)).toString());
+                    values.add(matcher.group(2));
+                })
+                .classifyLines("alku\nPäiväsiirto 351 kWh 2,98 snt/kWh 10,46 €\nloppu");
+        assertEquals(List.of("2,98", "10,46"), values);
+    }
+
+    /**
+     * The classifier gives the same matches, in the same order, as testing each pattern on each line of a
+     * {@link Scanner} in turn, which is how the parsers classified lines before.
+     */
+    @Test
+    void matchesSameAsPatternPerLine() {
+        var random = new Random(42);
+        for (var round = 0; round < 200; round++) {
+            var lines = new ArrayList<String>();
+            for (var i = 0; i < 30; i++) {
+                lines.add(LINES[random.nextInt(LINES.length)]);
+            }
+            Collections.shuffle(lines, random);
+            var text = String.join(random.nextBoolean() ? "\n" : "\r\n", lines);
+
+            var classified = new ArrayList<String>();
+            new LineClassifier()
+                    .rule(" - ", DATE_RANGE, (matcher, line) -> classified.add(match("range", matcher)))
+                    .rule("Perusmaksu", BASIC_PAY, (matcher, line) -> classified.add(match("basicPay", matcher)))
+                    .rule("Päiväsiirto", DAY_TRANSFER,
+                            (matcher, line) -> classified.add(match("transfer", matcher)))
+                    .rule(" €", AMOUNT, (matcher, line) -> classified.add(match("amount", matcher)))
+                    .classifyLines(text);
+
+            assertEquals(scannerMatches(text), classified, text);
+        }
+    }
+
+    @Test
+    void containsFindsKeyword() {
+        assertTrue(LineClassifier.contains("Päiväsiirto 351 kWh", "siirto"));
+        assertTrue(LineClassifier.contains("siirto", "siirto"));
+        assertTrue(LineClassifier.contains("ssiirto", "siirto"));
+        assertFalse(LineClassifier.contains("siirt", "siirto"));
+        assertFalse(LineClassifier.contains("", " - "));
+    }
+
+    private static List<String> scannerMatches(String text) {
+        var matches = new ArrayList<String>();
+        var scanner = new Scanner(text);
+        while (scanner.hasNextLine()) {
+            var line = scanner.nextLine();
+            if (DATE_RANGE.asPredicate().test(line)) {
+                var matcher = DATE_RANGE.matcher(line);
+                while (matcher.find()) {
+                    matches.add(match("range", matcher));
+                }
+            } else if (BASIC_PAY.asPredicate().test(line)) {
+                var matcher = BASIC_PAY.matcher(line);
+                while (matcher.find()) {
+                    matches.add(match("basicPay", matcher));
+                }
+            } else if (DAY_TRANSFER.asPredicate().test(line)) {
+                var matcher = DAY_TRANSFER.matcher(line);
+                while (matcher.find()) {
+                    matches.add(match("transfer", matcher));
+                }
+            } else if (AMOUNT.asPredicate().test(line)) {
+                var matcher = AMOUNT.matcher(line);
+                while (matcher.find()) {
+                    matches.add(match("amount", matcher));
+                }
+            }
+        }
+        return matches;
+    }
+
+    private static String match(String rule, Matcher matcher) {
+        var match = new StringBuilder(rule);
+        for (var group = 0; group <= matcher.groupCount(); group++) {
+            match.append('|').append(matcher.group(group));
+        }
+        return match.toString();
+    }
+}
@@ -0,0 +1,130 @@
+package com.devsoap.parsers.commons;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks decimals against the <code>String.format("%.02f")</code> formatting they replaced.
+ */
+class RowWriterTest {
+
+    private static final RowSchema COLUMNS = new RowSchema()
+            .text("month", "Kuukausi")
+            .integer("kwh", "kWh")
+            .decimal("eur", "EUR")
+            .freeze();
+
+    @Test
+    void decimalEqualsFormatter() {
+        var random = new Random(42);
+        for (var i = 0; i < 200_000; i++) {
+            double value;
+            switch (random.nextInt(4)) {
+                case 0:
+                    // Half a cent, the values Math.round(value * 100) gets wrong
+                    value = (random.nextInt(1_000_000) * 10 + 5) / 1000.0;
+                    break;
+                case 1:
+                    value = random.nextInt(100_000) / 100.0 + random.nextInt(1000) / 1e6;
+                    break;
+                case 2:
+                    value = random.nextDouble() * Math.pow(10, random.nextInt(16));
+                    break;
+                default:
+                    value = random.nextInt(1_000_000) / 1000.0;
+            }
+            assertDecimal(random.nextBoolean() ? value : -value);
+        }
+    }
+
+    @Test
+    void decimalEdgeCases() {
+        for (var value : new double[] {0, 0.005, 0.015, 0.125, 1.005, 1.015, 2.675, 4.35, 8.675, 10.46, 1234.565,
+                0.1 + 0.2, 99.995, 999999.995, 1e13 + 0.005, 4503599627370.495, 9e13, 123456789012.345}) {
+            assertDecimal(value);
+            assertDecimal(-value);
+        }
+        assertEquals("1.01", format(1.005));
+        assertEquals("2.68", format(2.675));
+        assertEquals("-1.01", format(-1.005));
+        assertEquals("0.00", format(-0.001));
+    }
+
+    @Test
+    void decimalRejectsNonFiniteValues() {
+        for (var value : new double[] {Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY}) {
+            assertThrows(IllegalArgumentException.class, () -> RowWriter.cents(value), String.valueOf(value));
+        }
+        assertThrows(IllegalArgumentException.class, () -> RowWriter.cents(1e18));
+    }
+
+    @Test
+    void writesCsvRows() {
+        var output = new ByteArrayOutputStream();
+        var rows = RowWriter.open(OutputFormat.CSV, COLUMNS, output);
+        rows.text("Tammikuu").integer(351).decimal(10.455).endRow();
+        rows.text(null).empty().decimal(0).endRow();
+        rows.finish();
+        assertEquals("Kuukausi,kWh,EUR\nTammikuu,351,10.46\n,,0.00\n", output.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void quotesCsvTextWithSeparatorsQuotesAndLineBreaks() {
+        var output = new ByteArrayOutputStream();
+        var rows = RowWriter.open(OutputFormat.CSV, COLUMNS, output);
+        for (var text : new String[] {"a,b", "a\"b", "a\nb", "a\rb", "a\r\nb"}) {
+            rows.text(text).empty().empty().endRow();
+        }
+        rows.finish();
+        assertEquals("Kuukausi,kWh,EUR\n\"a,b\",,\n\"a\"\"b\",,\n\"a\nb\",,\n\"a\rb\",,\n\"a\r\nb\",,\n",
+                output.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void frozenSchemaRejectsColumns() {
+        assertTrue(COLUMNS.isFrozen());
+        assertThrows(IllegalStateException.class, () -> COLUMNS.text("note", "Note"));
+        assertEquals(3, COLUMNS.size());
+        assertTrue(EnergyReport.COLUMNS.isFrozen());
+        assertThrows(IllegalStateException.class, () -> EnergyReport.COLUMNS.decimal("extra", "Extra"));
+    }
+
+    @Test
+    void rejectsValueOfWrongType() {
+        var rows = RowWriter.open(OutputFormat.CSV, COLUMNS, new ByteArrayOutputStream());
+        assertThrows(IllegalArgumentException.class, () -> rows.integer(1));
+        rows.text("Tammikuu");
+        assertThrows(IllegalArgumentException.class, () -> rows.decimal(1));
+        rows.integer(1).decimal(1);
+        assertThrows(IllegalStateException.class, () -> rows.empty());
+    }
+
+    @Test
+    void formatFallsBackToGivenDefault() {
+        assertEquals(OutputFormat.CSV, OutputFormat.of(null, "text/html, */*"));
+        assertEquals(OutputFormat.NDJSON, OutputFormat.of(null, "text/html, */*", OutputFormat.NDJSON));
+        assertEquals(OutputFormat.NDJSON, OutputFormat.of(null, null, OutputFormat.NDJSON));
+        assertEquals(OutputFormat.CSV, OutputFormat.of("csv", null, OutputFormat.NDJSON));
+        assertEquals(OutputFormat.CSV, OutputFormat.of(null, "text/csv", OutputFormat.NDJSON));
+    }
+
+    private static void assertDecimal(double value) {
+        var expected = String.format(Locale.ROOT, "%.02f", value);
+        if (expected.equals("-0.00")) {
+            expected = "0.00";
+        }
+        assertEquals(expected, format(value), String.valueOf(value));
+    }
+
+    private static String format(double value) {
+        var text = new StringBuilder();
+        RowWriter.appendDecimal(text, RowWriter.cents(value));
+        return text.toString();
+    }
+}
@@ -0,0 +1,50 @@
+package com.devsoap.parsers.plugsurfing;
+
+import com.devsoap.parsers.commons.DocumentSample;
+import com.devsoap.parsers.commons.InvoiceParser;
+import com.devsoap.parsers.commons.MonthlyUsage;
+import com.devsoap.parsers.commons.PdfSource;
+import com.devsoap.parsers.commons.RowSchema;
+import com.devsoap.parsers.commons.RowWriter;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class PlugSurfingInvoiceParser implements InvoiceParser<HashMap<String, PlugSurfingParser.Session>> {
+
+    @Override
+    public String name() {
+        return PlugSurfingParser.class.getSimpleName();
+    }
+
+    @Override
+    public int sniff(DocumentSample sample) {
+        return sample.score("plugsurfing");
+    }
+
+    @Override
+    public HashMap<String, PlugSurfingParser.Session> parse(PdfSource file, Map<String, String> parameters) {
+        return new HashMap<>(PlugSurfingParser.totals(file));
+    }
+
+    @Override
+    public RowSchema columns() {
+        return PlugSurfingParser.COLUMNS;
+    }
+
+    @Override
+    public void write(HashMap<String, PlugSurfingParser.Session> totals, RowWriter rows) {
+        PlugSurfingParser.writeTotals(totals, rows);
+    }
+
+    @Override
+    public List<MonthlyUsage> usage(HashMap<String, PlugSurfingParser.Session> totals) {
+        return PlugSurfingParser.totalUsage(totals);
+    }
+
+    @Override
+    public String reportName() {
+        return "plugsurfing-report";
+    }
+}
@@ -1,20 +1,27 @@
 package com.devsoap.parsers.plugsurfing;
 
-import com.itextpdf.kernel.pdf.PdfDocument;
-import com.itextpdf.kernel.pdf.PdfReader;
-import com.itextpdf.kernel.pdf.canvas.parser.PdfTextExtractor;
+import com.devsoap.parsers.commons.FinnishFields;
+import com.devsoap.parsers.commons.MonthlyUsage;
+import com.devsoap.parsers.commons.LineClassifier;
+import com.devsoap.parsers.commons.OutputFormat;
+import com.devsoap.parsers.commons.PageTextExtractor;
+import com.devsoap.parsers.commons.ParserMetrics;
+import com.devsoap.parsers.commons.PdfSource;
+import com.devsoap.parsers.commons.RowSchema;
+import com.devsoap.parsers.commons.RowWriter;
 
 import java.io.IOException;
 import java.io.PrintStream;
+import java.io.Serializable;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.text.NumberFormat;
-import java.text.ParseException;
 import java.time.Duration;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class PlugSurfingParser {
@@ -22,11 +29,16 @@ public class PlugSurfingParser {
     private static final Pattern DATE_TIME_KWH_DURATION_PATTERN = Pattern.compile("(\\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}) \\((.*), (.*)kWh\\)");
     private static final Pattern QUANTITY_PATTERN = Pattern.compile("(\\d+) (\\d+,\\d+) (\\d+)% (\\d+,\\d+) €");
 
-    private static final Locale FI_LOCALE = new Locale("FI", "fi");
-    private static final DateTimeFormatter FI_DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm").withLocale(FI_LOCALE);
-    private static final DateTimeFormatter FI_TIME = DateTimeFormatter.ofPattern("HH:mm:ss").withLocale(FI_LOCALE);
-    private static final DateTimeFormatter KEY_FORMATTER = DateTimeFormatter.ofPattern("yyyy-M");
-    private static final NumberFormat GERMANY_AMOUNT = NumberFormat.getNumberInstance(Locale.FRANCE);
+    private static final ParserMetrics METRICS = ParserMetrics.of(PlugSurfingParser.class);
+
+    public static final RowSchema COLUMNS = new RowSchema()
+            .integer("year", "Vuosi")
+            .integer("month", "Kuukausi")
+            .integer("sessions", "Latauksia")
+            .decimal("unitPrice", "Perusmaksu(€)")
+            .decimal("amountEur", "Total(€)")
+            .decimal("kwh", "Energia(kwh)")
+            .freeze();
 
     public static void main(String[] args) {
         var filename = args[0];
@@ -35,16 +47,78 @@ public class PlugSurfingParser {
     }
 
     public static void run(Path file, PrintStream result) {
-        result.println("Vuosi,Kuukausi,Latauksia,Perusmaksu(€),Total(€),Energia(kwh)");
-        parse(file).forEach((month, sessions) -> result.println(sessions.stream()
+        run(PdfSource.of(file), result);
+    }
+
+    public static void run(PdfSource file, PrintStream result) {
+        var rows = RowWriter.open(OutputFormat.CSV, COLUMNS, result);
+        write(file, rows);
+        rows.finish();
+    }
+
+    /**
+     * Writes a row of {@link #COLUMNS} with the total of each month, in the same order as the months of
+     * {@link #parse(PdfSource)}. Only the monthly totals are kept in memory, not the sessions.
+     */
+    public static void write(PdfSource file, RowWriter rows) {
+        writeTotals(monthlyTotals(sessions -> parse(file, sessions), () -> totals(file)), rows);
+    }
+
+    /**
+     * Writes the rows of {@link #write(PdfSource, RowWriter)} for the extracted text of each page.
+     */
+    public static void writeText(List<String> pageTexts, RowWriter rows) {
+        writeTotals(monthlyTotals(sessions -> parseText(pageTexts, sessions), () -> totalsText(pageTexts)), rows);
+    }
+
+    /**
+     * Sums the sessions of each month in one pass with {@link MonthlyTotals}. Statements list sessions in time
+     * order, but if a month comes up again after another one, the totals are summed again with the fallback,
+     * which accepts sessions in any order.
+     */
+    private static Map<String, Session> monthlyTotals(Consumer<Consumer<Session>> statement,
+                                                      Supplier<Map<String, Session>> fallback) {
+        var monthlyTotals = new HashMap<String, Session>();
+        var totals = new MonthlyTotals(monthlyTotals::put);
+        statement.accept(totals);
+        totals.finish();
+        return totals.isInOrder() ? monthlyTotals : fallback.get();
+    }
+
+    public static void print(Map<String, List<Session>> monthlySessions, PrintStream result) {
+        var rows = RowWriter.open(OutputFormat.CSV, COLUMNS, result);
+        write(monthlySessions, rows);
+        rows.finish();
+    }
+
+    /**
+     * Writes a row of {@link #COLUMNS} with the total of each month.
+     */
+    public static void write(Map<String, List<Session>> monthlySessions, RowWriter rows) {
+        var started = System.nanoTime();
+        monthlySessions.values().forEach(sessions -> writeRow(sessions.stream()
+            .map(Session::copy)
             .reduce(Session::add)
-            .map(session -> String.format("%s,%s,%d,%.02f,%.02f,%.02f",
-                month.split("-")[0], month.split("-")[1],
-                session.quantity, session.unitPrice, session.amountEur, session.kwh))
-                .orElseThrow()));
+            .orElseThrow(), rows));
+        METRICS.render.observeNanos(System.nanoTime() - started);
     }
 
-    public static class Session {
+    /**
+     * Writes a row of {@link #COLUMNS} per monthly total of {@link #totals(PdfSource)}.
+     */
+    public static void writeTotals(Map<String, Session> monthlyTotals, RowWriter rows) {
+        var started = System.nanoTime();
+        monthlyTotals.values().forEach(total -> writeRow(total, rows));
+        METRICS.render.observeNanos(System.nanoTime() - started);
+    }
+
+    private static void writeRow(Session total, RowWriter rows) {
+        rows.integer(total.timestamp.getYear()).integer(total.timestamp.getMonthValue())
+                .integer(total.quantity).decimal(total.unitPrice).decimal(total.amountEur).decimal(total.kwh)
+                .endRow();
+    }
+
+    public static class Session implements Serializable {
         public LocalDateTime timestamp;
         public Duration duration;
         public int quantity = 0;
@@ -52,6 +126,18 @@ public class PlugSurfingParser {
         public double taxRate = 0;
         public double amountEur = 0;
         public double kwh;
+        public Session copy() {
+            var copy = new Session();
+            copy.timestamp = timestamp;
+            copy.duration = duration;
+            copy.quantity = quantity;
+            copy.unitPrice = unitPrice;
+            copy.taxRate = taxRate;
+            copy.amountEur = amountEur;
+            copy.kwh = kwh;
+            return copy;
+        }
+
         public Session add(Session session) {
             this.duration = this.duration.plus(session.duration);
             this.quantity += session.quantity;
@@ -63,44 +149,217 @@ public class PlugSurfingParser {
         }
     }
 
+    /**
+     * The charged kWh and the amount of each month.
+     */
+    public static List<MonthlyUsage> usage(Map<String, List<Session>> monthlySessions) {
+        var usage = new ArrayList<MonthlyUsage>();
+        monthlySessions.forEach((month, sessions) -> {
+            if (!sessions.isEmpty()) {
+                var timestamp = sessions.get(0).timestamp;
+                usage.add(new MonthlyUsage(timestamp.getYear(), timestamp.getMonthValue(),
+                        sessions.stream().mapToDouble(session -> session.kwh).sum(),
+                        sessions.stream().mapToDouble(session -> session.amountEur).sum()));
+            }
+        });
+        return usage;
+    }
+
+    /**
+     * The charged kWh and the amount of each monthly total of {@link #totals(PdfSource)}.
+     */
+    public static List<MonthlyUsage> totalUsage(Map<String, Session> monthlyTotals) {
+        var usage = new ArrayList<MonthlyUsage>();
+        monthlyTotals.values().forEach(total -> usage.add(new MonthlyUsage(total.timestamp.getYear(),
+                total.timestamp.getMonthValue(), total.kwh, total.amountEur)));
+        return usage;
+    }
+
     public static Map<String, List<Session>> parse(Path file) {
+        return parse(PdfSource.of(file));
+    }
+
+    public static Map<String, List<Session>> parse(PdfSource file) {
         var sessions = new HashMap<String, List<Session>>();
-        try (var reader = new PdfReader(file.toFile())) {
-            var document = new PdfDocument(reader);
-            Session session = null;
-            for (var pageIndex=1; pageIndex <= document.getNumberOfPages(); pageIndex++) {
-                var page = document.getPage(pageIndex);
-                var text = PdfTextExtractor.getTextFromPage(page);
-                var scanner = new Scanner(text);
-                while(scanner.hasNextLine()) {
-                    var line = scanner.nextLine();
-                    if (DATE_TIME_KWH_DURATION_PATTERN.asPredicate().test(line)) {
-                        var matcher = DATE_TIME_KWH_DURATION_PATTERN.matcher(line);
-                        session = new Session();
-                        while(matcher.find()) {
-                            session.timestamp = LocalDateTime.parse(matcher.group(1), FI_DATE).withSecond(0);
-                            session.duration = Duration.between(LocalTime.of(0,0,0), LocalTime.from(FI_TIME.parse(matcher.group(2))));
-                            session.kwh = Double.parseDouble(matcher.group(3));
-                        }
-                    } else if (session != null && QUANTITY_PATTERN.asPredicate().test(line)) {
-                        var matcher = QUANTITY_PATTERN.matcher(line);
-                        while(matcher.find()) {
-                            session.quantity = Integer.parseInt(matcher.group(1));
-                            session.unitPrice = GERMANY_AMOUNT.parse(matcher.group(2)).doubleValue();
-                            session.taxRate =  Double.parseDouble(matcher.group(3)) / 100.0;
-                            session.amountEur = GERMANY_AMOUNT.parse(matcher.group(4)).doubleValue();
-                            sessions.computeIfAbsent(
-                                KEY_FORMATTER.format(session.timestamp),
-                                (k) -> new ArrayList<>())
-                                .add(session);
-                        }
-                        session = null;
-                    }
-                }
-            }
-        } catch (IOException | ParseException e) {
+        parse(file, session -> sessions.computeIfAbsent(monthKey(session), k -> new ArrayList<>()).add(session));
+        return sessions;
+    }
+
+    /**
+     * Sums the sessions of each month without keeping the sessions in memory. Unlike {@link MonthlyTotals} the
+     * sessions do not need to be in time order.
+     */
+    public static Map<String, Session> totals(PdfSource file) {
+        var totals = new HashMap<String, Session>();
+        parse(file, session -> totals.merge(monthKey(session), session, Session::add));
+        return totals;
+    }
+
+    public static Map<String, Session> totalsText(List<String> pageTexts) {
+        var totals = new HashMap<String, Session>();
+        var sessionParser = new SessionParser(session -> totals.merge(monthKey(session), session, Session::add));
+        pageTexts.forEach(sessionParser::parse);
+        sessionParser.publishMetrics();
+        return totals;
+    }
+
+    /**
+     * Parses the statement page by page, handing each session to the consumer as soon as its page has been
+     * extracted.
+     */
+    public static void parse(PdfSource file, Consumer<Session> sessions) {
+        var sessionParser = new SessionParser(sessions);
+        try {
+            PageTextExtractor.forEachPage(file, METRICS, (text, pageNumber) -> sessionParser.parse(text));
+        } catch (IOException e) {
+            METRICS.failures.increment();
             throw new RuntimeException(e);
+        } catch (RuntimeException e) {
+            METRICS.failures.increment();
+            throw e;
         }
+        sessionParser.publishMetrics();
+    }
+
+    public static Map<String, List<Session>> parseText(List<String> pageTexts) {
+        var sessions = new HashMap<String, List<Session>>();
+        parseText(pageTexts,
+                session -> sessions.computeIfAbsent(monthKey(session), k -> new ArrayList<>()).add(session));
         return sessions;
     }
+
+    private static void parseText(List<String> pageTexts, Consumer<Session> sessions) {
+        var sessionParser = new SessionParser(sessions);
+        pageTexts.forEach(sessionParser::parse);
+        sessionParser.publishMetrics();
+    }
+
+    /**
+     * The <code>yyyy-M</code> month a session belongs to.
+     */
+    public static String monthKey(Session session) {
+        return FinnishFields.yearMonthKey(session.timestamp.getYear(), session.timestamp.getMonthValue());
+    }
+
+    /**
+     * Sums sessions into a running total per month. Statements list sessions in time order, so a month is
+     * handed on as complete when the first session of another month arrives, and the last one by
+     * {@link #finish()}. Only the total of the current month, and the keys of the months handed on, are kept in
+     * memory.
+     *
+     * A session of a month that was already handed on can not be added to its total. Nothing more is handed on
+     * after one and {@link #isInOrder()} turns false, so the caller can sum the statement with
+     * {@link #totals(PdfSource)}, which accepts any order, instead.
+     */
+    public static class MonthlyTotals implements Consumer<Session> {
+        private final BiConsumer<String, Session> completedMonths;
+        private final Set<String> completed = new HashSet<>();
+        private String month = null;
+        private Session total = null;
+        private boolean inOrder = true;
+
+        public MonthlyTotals(BiConsumer<String, Session> completedMonths) {
+            this.completedMonths = completedMonths;
+        }
+
+        @Override
+        public void accept(Session session) {
+            if (!inOrder) {
+                return;
+            }
+            var sessionMonth = monthKey(session);
+            if (!sessionMonth.equals(month)) {
+                if (completed.contains(sessionMonth)) {
+                    inOrder = false;
+                    month = null;
+                    total = null;
+                    return;
+                }
+                finish();
+                month = sessionMonth;
+                total = session.copy();
+            } else {
+                total.add(session);
+            }
+        }
+
+        /**
+         * Hands on the month in progress.
+         */
+        public void finish() {
+            if (total != null) {
+                completed.add(month);
+                completedMonths.accept(month, total);
+                month = null;
+                total = null;
+            }
+        }
+
+        /**
+         * Whether every month handed on so far is complete, <code>false</code> once a session of a month
+         * that was already handed on arrives.
+         */
+        public boolean isInOrder() {
+            return inOrder;
+        }
+    }
+
+    /**
+     * Collects sessions page by page. The session found on a date line is kept between pages as its
+     * quantity line may be on the next page.
+     */
+    private static class SessionParser {
+        private final Consumer<Session> sessions;
+        private final LineClassifier classifier = new LineClassifier(METRICS)
+                .rule("kWh)", DATE_TIME_KWH_DURATION_PATTERN, this::session)
+                .rule("% ", QUANTITY_PATTERN, this::quantity);
+        private Session session = null;
+        private long matchNanos = 0;
+
+        private SessionParser(Consumer<Session> sessions) {
+            this.sessions = sessions;
+        }
+
+        private void parse(String text) {
+            var started = System.nanoTime();
+            classifier.classifyLines(text);
+            matchNanos += System.nanoTime() - started;
+        }
+
+        private void publishMetrics() {
+            METRICS.match.observeNanos(matchNanos);
+        }
+
+        private void session(Matcher matcher, CharSequence line) {
+            session = new Session();
+            session.timestamp = timestamp(line, matcher.start(1));
+            session.duration = Duration.ofSeconds(FinnishFields.clockSeconds(line, matcher.start(2), matcher.end(2)));
+            session.kwh = FinnishFields.decimal(line, matcher.start(3), matcher.end(3));
+        }
+
+        private void quantity(Matcher matcher, CharSequence line) {
+            if (session == null) {
+                return;
+            }
+            session.quantity = FinnishFields.integer(line, matcher.start(1), matcher.end(1));
+            session.unitPrice = FinnishFields.decimal(line, matcher.start(2), matcher.end(2));
+            session.taxRate = FinnishFields.integer(line, matcher.start(3), matcher.end(3)) / 100.0;
+            session.amountEur = FinnishFields.decimal(line, matcher.start(4), matcher.end(4));
+            var completed = session;
+            session = null;
+            sessions.accept(completed);
+        }
+
+        /**
+         * Reads the fixed width <code>yyyy-MM-dd HH:mm</code> timestamp of a session line.
+         */
+        private static LocalDateTime timestamp(CharSequence line, int start) {
+            return LocalDateTime.of(
+                    FinnishFields.integer(line, start, start + 4),
+                    FinnishFields.integer(line, start + 5, start + 7),
+                    FinnishFields.integer(line, start + 8, start + 10),
+                    FinnishFields.integer(line, start + 11, start + 13),
+                    FinnishFields.integer(line, start + 14, start + 16));
+        }
+    }
 }
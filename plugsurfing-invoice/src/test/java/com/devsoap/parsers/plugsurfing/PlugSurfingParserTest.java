@@ -0,0 +1,167 @@
+package com.devsoap.parsers.plugsurfing;
+
+import com.devsoap.parsers.commons.OutputFormat;
+import com.devsoap.parsers.commons.RowWriter;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PlugSurfingParserTest {
+
+    /**
+     * The second session's quantity line is on the next page.
+     */
+    private static final List<String> PAGES = List.of(
+            String.join("\n",
+                    "Plugsurfing GmbH - Charging statement, page 1",
+                    "2021-01-02 08:00 (01:23:45, 12.345kWh)",
+                    "1 0,35 24% 4,32 €",
+                    "2021-01-20 18:30 (00:45:00, 7.500kWh)"),
+            String.join("\n",
+                    "Plugsurfing GmbH - Charging statement, page 2",
+                    "1 0,40 24% 3,00 €",
+                    "2021-02-01 07:15 (02:00:00, 20.000kWh)",
+                    "1 0,30 10% 6,00 €"));
+
+    @Test
+    void parsesSessionsPerMonth() {
+        var sessions = PlugSurfingParser.parseText(PAGES);
+        assertEquals(Set.of("2021-1", "2021-2"), sessions.keySet());
+        assertEquals(2, sessions.get("2021-1").size());
+        assertEquals(1, sessions.get("2021-2").size());
+
+        var first = sessions.get("2021-1").get(0);
+        assertEquals(LocalDateTime.of(2021, 1, 2, 8, 0), first.timestamp);
+        assertEquals(Duration.ofHours(1).plusMinutes(23).plusSeconds(45), first.duration);
+        assertEquals(12.345, first.kwh);
+        assertEquals(1, first.quantity);
+        assertEquals(0.35, first.unitPrice);
+        assertEquals(0.24, first.taxRate);
+        assertEquals(4.32, first.amountEur);
+
+        var acrossPages = sessions.get("2021-1").get(1);
+        assertEquals(LocalDateTime.of(2021, 1, 20, 18, 30), acrossPages.timestamp);
+        assertEquals(Duration.ofMinutes(45), acrossPages.duration);
+        assertEquals(7.5, acrossPages.kwh);
+        assertEquals(0.4, acrossPages.unitPrice);
+        assertEquals(3.0, acrossPages.amountEur);
+
+        var february = sessions.get("2021-2").get(0);
+        assertEquals(LocalDateTime.of(2021, 2, 1, 7, 15), february.timestamp);
+        assertEquals(Duration.ofHours(2), february.duration);
+        assertEquals(20.0, february.kwh);
+        assertEquals(0.1, february.taxRate);
+        assertEquals(6.0, february.amountEur);
+    }
+
+    @Test
+    void ignoresQuantityWithoutSession() {
+        var sessions = PlugSurfingParser.parseText(List.of("1 0,35 24% 4,32 €"));
+        assertTrue(sessions.isEmpty());
+    }
+
+    @Test
+    void sumsSessionsPerMonth() {
+        var totals = PlugSurfingParser.totalsText(PAGES);
+        assertEquals(Set.of("2021-1", "2021-2"), totals.keySet());
+
+        var january = totals.get("2021-1");
+        assertEquals(2, january.quantity);
+        assertEquals(19.845, january.kwh, 1e-9);
+        assertEquals(7.32, january.amountEur, 1e-9);
+        assertEquals(Duration.ofHours(2).plusMinutes(8).plusSeconds(45), january.duration);
+
+        var usage = PlugSurfingParser.totalUsage(Map.of("2021-2", totals.get("2021-2")));
+        assertEquals(1, usage.size());
+        assertEquals(20.0, usage.get(0).kwh);
+        assertEquals(6.0, usage.get(0).eur);
+    }
+
+    @Test
+    void mergesMonthThatRepeatsOutOfOrder() {
+        var totals = PlugSurfingParser.totalsText(List.of(String.join("\n",
+                "2021-01-02 08:00 (01:00:00, 10.000kWh)",
+                "1 0,35 24% 4,00 €",
+                "2021-02-01 07:15 (02:00:00, 20.000kWh)",
+                "1 0,30 24% 6,00 €",
+                "2021-01-30 08:00 (01:00:00, 5.000kWh)",
+                "1 0,35 24% 2,00 €")));
+        assertEquals(2, totals.get("2021-1").quantity);
+        assertEquals(15.0, totals.get("2021-1").kwh);
+        assertEquals(6.0, totals.get("2021-1").amountEur);
+    }
+
+    @Test
+    void monthlyTotalsStopAtMonthThatRepeatsAfterCompleting() {
+        var completed = new ArrayList<String>();
+        var totals = new PlugSurfingParser.MonthlyTotals((month, total) -> completed.add(month));
+        var sessions = PlugSurfingParser.parseText(PAGES);
+        totals.accept(sessions.get("2021-1").get(0));
+        totals.accept(sessions.get("2021-1").get(1));
+        totals.accept(sessions.get("2021-2").get(0));
+        assertEquals(List.of("2021-1"), completed);
+        assertTrue(totals.isInOrder());
+
+        totals.accept(sessions.get("2021-1").get(0));
+        totals.accept(sessions.get("2021-2").get(0));
+        totals.finish();
+        assertFalse(totals.isInOrder());
+        assertEquals(List.of("2021-1"), completed);
+    }
+
+    @Test
+    void writesSameRowsAsSessionsPerMonth() {
+        assertEquals(printSessions(PAGES), writeText(PAGES));
+    }
+
+    /**
+     * Sessions out of time order are grouped into months, and the rows ordered, as if they were in order.
+     */
+    @Test
+    void writesSessionsOutOfOrder() {
+        var pages = List.of(
+                String.join("\n",
+                        "2021-03-02 08:00 (01:00:00, 10.000kWh)",
+                        "1 0,35 24% 4,00 €",
+                        "2021-01-01 07:15 (02:00:00, 20.000kWh)",
+                        "1 0,30 24% 6,00 €"),
+                String.join("\n",
+                        "2021-02-10 08:00 (00:30:00, 3.000kWh)",
+                        "1 0,35 24% 1,50 €",
+                        "2021-03-30 08:00 (01:00:00, 5.000kWh)",
+                        "1 0,35 24% 2,00 €",
+                        "2021-01-15 08:00 (01:00:00, 7.000kWh)",
+                        "1 0,30 24% 3,00 €"));
+
+        var written = writeText(pages);
+        assertEquals(printSessions(pages), written);
+        assertTrue(written.contains("\n2021,3,2,0.70,6.00,15.00\n"), written);
+        assertTrue(written.contains("\n2021,1,2,0.60,9.00,27.00\n"), written);
+        assertTrue(written.contains("\n2021,2,1,0.35,1.50,3.00\n"), written);
+    }
+
+    private static String writeText(List<String> pages) {
+        var output = new ByteArrayOutputStream();
+        var rows = RowWriter.open(OutputFormat.CSV, PlugSurfingParser.COLUMNS, output);
+        PlugSurfingParser.writeText(pages, rows);
+        rows.finish();
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+    private static String printSessions(List<String> pages) {
+        var output = new ByteArrayOutputStream();
+        PlugSurfingParser.print(PlugSurfingParser.parseText(pages),
+                new PrintStream(output, true, StandardCharsets.UTF_8));
+        return output.toString(StandardCharsets.UTF_8);
+    }
+}
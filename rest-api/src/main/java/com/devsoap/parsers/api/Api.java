@@ -1,21 +1,44 @@
 package com.devsoap.parsers.api;
 
 import com.devsoap.parsers.caruna.CarunaParser;
+import com.devsoap.parsers.commons.InvoiceParser;
+import com.devsoap.parsers.commons.DocumentLimits;
+import com.devsoap.parsers.commons.DocumentTooLargeException;
+import com.devsoap.parsers.commons.EnergyReport;
+import com.devsoap.parsers.commons.Metrics;
+import com.devsoap.parsers.commons.MonthlyUsage;
+import com.devsoap.parsers.commons.OutputFormat;
+import com.devsoap.parsers.commons.ParserRegistry;
+import com.devsoap.parsers.commons.PdfSource;
+import com.devsoap.parsers.commons.RowSchema;
+import com.devsoap.parsers.commons.RowWriter;
 import com.devsoap.parsers.composites.CarunaHelenParser;
 import com.devsoap.parsers.helen.HelenParser;
 import com.devsoap.parsers.plugsurfing.PlugSurfingParser;
 import io.javalin.Javalin;
 import io.javalin.http.Context;
-import io.javalin.http.UploadedFile;
 import org.apache.log4j.Logger;
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.core.config.Configurator;
 import org.apache.logging.log4j.core.config.builder.api.ConfigurationBuilderFactory;
 
+import javax.servlet.MultipartConfigElement;
+import javax.servlet.ServletException;
+import javax.servlet.http.Part;
 import java.io.*;
+import java.math.BigInteger;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.function.Consumer;
 
 import static io.javalin.apibuilder.ApiBuilder.*;
@@ -35,85 +58,448 @@ public class Api {
 
     private static final Logger LOGGER = Logger.getLogger(Api.class);
 
+    private static final int STREAM_BUFFER_SIZE = 8 * 1024;
+    private static final long UPLOAD_MEMORY_THRESHOLD = Long.getLong("parsers.upload.memoryThreshold", 8 * 1024 * 1024);
+    private static final long MAX_REQUEST_BYTES = Long.getLong("parsers.upload.maxRequestBytes", 256 * 1024 * 1024);
+    private static final String MULTIPART_CONFIG_ATTRIBUTE = "org.eclipse.jetty.multipartConfig";
+    private static final Path UPLOAD_DIRECTORY = Path.of(System.getProperty("java.io.tmpdir"));
+
+    private static final ResultCache CACHE = ResultCache.fromSystemProperties();
+    private static final ParseExecutor EXECUTOR = ParseExecutor.fromSystemProperties();
+    private static final BatchParser BATCH = BatchParser.fromSystemProperties(EXECUTOR);
+    private static final PeriodStore STORE = PeriodStore.fromSystemProperties();
+    private static final Warmup WARMUP = Warmup.fromSystemProperties(EXECUTOR);
+
+    private static final Metrics.Histogram UPLOAD_BYTES = Metrics.histogram("parsers_upload_bytes",
+            "Size of uploaded files", Metrics.BYTES_BUCKETS);
+
     public static void main(String[] args) {
-        var app = Javalin.create().start(7000);
+        registerMetrics();
+        var app = Javalin.create().start(Integer.getInteger("parsers.port", 7000));
+        app.before(ctx -> {
+            if (ctx.req.getContentLengthLong() > MAX_REQUEST_BYTES) {
+                throw new DocumentTooLargeException("Request of " + ctx.req.getContentLengthLong()
+                        + " bytes exceeds the limit of " + MAX_REQUEST_BYTES + " bytes");
+            }
+            ctx.req.setAttribute(MULTIPART_CONFIG_ATTRIBUTE, new MultipartConfigElement(
+                    UPLOAD_DIRECTORY.toString(), MAX_REQUEST_BYTES, MAX_REQUEST_BYTES,
+                    (int) UPLOAD_MEMORY_THRESHOLD));
+        });
+        app.exception(DocumentTooLargeException.class, (e, ctx) -> rejectTooLarge(ctx, e));
         app.routes(() -> {
             get(ctx -> { ctx.result("PDF Parsers REST API"); });
             path("parsers", () -> {
 
                 path(CarunaParser.class.getSimpleName(), () -> {
                     get(ctx -> ctx.render(renderParserStaticPage(CarunaParser.class, "upload.html")));
-                    post(ctx -> {
-                       withUploadedFile(ctx.uploadedFiles().get(0), carunaFile -> {
-                           renderParserOutput(ctx, result -> CarunaParser
-                                   .run(carunaFile, result), "caruna-report.csv");
+                    post(ctx -> parseAsync(ctx, () -> {
+                       withUploadedFile(uploadedFiles(ctx).get(0), carunaFile -> {
+                           var periods = CACHE.get(cacheKey(CarunaParser.class, carunaFile.contentHash()),
+                                   () -> new HashMap<>(CarunaParser.parse(carunaFile)));
+                           store(ctx, CarunaParser.class, carunaFile, CarunaParser.usage(periods), periods);
+                           renderRows(ctx, EnergyReport.COLUMNS, rows -> CarunaParser
+                                   .write(periods, rows), "caruna-report");
                        });
-                    });
+                    }));
                 });
 
                 path(HelenParser.class.getSimpleName(), () -> {
                     get(ctx -> ctx.render(renderParserStaticPage(HelenParser.class, "upload.html")));
-                    post(ctx -> {
-                        withUploadedFile(ctx.uploadedFiles().get(0), helenFile -> {
-                            renderParserOutput(ctx, result -> HelenParser
-                                    .run(helenFile, ctx.formParam("dayKwh"), ctx.formParam("nightKwh"), result)
-                            , "caruna-report.csv");
+                    post(ctx -> parseAsync(ctx, () -> {
+                        withUploadedFile(uploadedFiles(ctx).get(0), helenFile -> {
+                            var dayKwh = ctx.formParam("dayKwh");
+                            var nightKwh = ctx.formParam("nightKwh");
+                            var periods = CACHE.get(
+                                    cacheKey(HelenParser.class, helenFile.contentHash(), dayKwh, nightKwh),
+                                    () -> new HashMap<>(HelenParser.parse(helenFile,
+                                            HelenParser.parseKwhPeriods(dayKwh),
+                                            HelenParser.parseKwhPeriods(nightKwh))));
+                            store(ctx, HelenParser.class, helenFile, HelenParser.usage(periods), periods);
+                            renderRows(ctx, EnergyReport.COLUMNS, rows -> HelenParser
+                                    .write(periods, rows), "helen-report");
                         });
-                    });
+                    }));
                 });
 
                 path(CarunaHelenParser.class.getSimpleName(), () -> {
                     get(ctx -> ctx.render(renderParserStaticPage(CarunaHelenParser.class, "upload.html")));
-                    post(ctx -> {
-                        withUploadedFile(ctx.uploadedFiles().get(1), carunaFile -> {
-                            withUploadedFile(ctx.uploadedFiles().get(0), helenFile -> {
-                                renderParserOutput(ctx, result ->
-                                        CarunaHelenParser.run(carunaFile, helenFile, result), "caruna-helen-report.csv");
+                    post(ctx -> parseAsync(ctx, () -> {
+                        withUploadedFile(uploadedFiles(ctx).get(1), carunaFile -> {
+                            withUploadedFile(uploadedFiles(ctx).get(0), helenFile -> {
+                                var periods = CarunaHelenParser.parse(
+                                        () -> CACHE.get(cacheKey(CarunaParser.class, carunaFile.contentHash()),
+                                                () -> new HashMap<>(CarunaParser.parse(carunaFile))),
+                                        () -> CACHE.get(cacheKey(HelenParser.Readings.class, helenFile.contentHash()),
+                                                () -> HelenParser.read(helenFile)),
+                                        EXECUTOR.companionReads());
+                                store(ctx, CarunaParser.class, carunaFile, CarunaParser.usage(periods.caruna),
+                                        new HashMap<>(periods.caruna));
+                                store(ctx, HelenParser.class, helenFile, HelenParser.usage(periods.helen),
+                                        new HashMap<>(periods.helen));
+                                renderRows(ctx, EnergyReport.COLUMNS, rows -> CarunaHelenParser
+                                        .write(periods.caruna, periods.helen, rows), "caruna-helen-report");
                             });
                         });
-                    });
+                    }));
                 });
 
                 path(PlugSurfingParser.class.getSimpleName(), () -> {
                     get(ctx -> ctx.render(renderParserStaticPage(PlugSurfingParser.class, "upload.html")));
-                    post(ctx -> {
-                        withUploadedFile(ctx.uploadedFiles().get(0), plugFile -> {
-                            renderParserOutput(ctx, result -> PlugSurfingParser
-                                    .run(plugFile, result), "plugsurfing-report.csv");
+                    post(ctx -> parseAsync(ctx, () -> {
+                        withUploadedFile(uploadedFiles(ctx).get(0), plugFile -> {
+                            var totals = CACHE.get(cacheKey(PlugSurfingParser.class, plugFile.contentHash()),
+                                    () -> new HashMap<>(PlugSurfingParser.totals(plugFile)));
+                            store(ctx, PlugSurfingParser.class, plugFile, PlugSurfingParser.totalUsage(totals),
+                                    totals);
+                            renderRows(ctx, PlugSurfingParser.COLUMNS, rows -> PlugSurfingParser
+                                    .writeTotals(totals, rows), "plugsurfing-report");
                         });
-                    });
+                    }));
                 });
 
+                path("auto", () -> post(ctx -> parseAsync(ctx, () -> {
+                    withUploadedFile(uploadedFiles(ctx).get(0), file -> {
+                        var parser = detectParser(file);
+                        if (parser.isEmpty()) {
+                            renderPlainText(ctx, 422, "Unrecognized invoice");
+                            return;
+                        }
+                        ctx.header("X-Parser", parser.get().name());
+                        parseAndRender(ctx, parser.get(), file, formParameters(ctx));
+                    });
+                })));
+
+                path("batch", () -> post(Api::parseBatch));
             });
+
+            path("store/:account", () -> {
+                get(ctx -> {
+                    var months = monthRange(ctx);
+                    if (months == null) {
+                        return;
+                    }
+                    var rows = STORE.query(ctx.pathParam("account"), months[0], months[1], ctx.queryParam("source"));
+                    var csv = new StringBuilder("source,year,month,kwh,eur,documents\n");
+                    rows.forEach(row -> csv.append(String.format(Locale.ROOT, "%s,%d,%d,%.02f,%.02f,%d%n",
+                            row.source, row.month.getYear(), row.month.getMonthValue(), row.kwh, row.eur,
+                            row.documents)));
+                    ctx.contentType("text/csv; charset=utf-8").result(csv.toString());
+                });
+                path(":source", () -> get(Api::renderStoredResults));
+            });
+
+            path("cache", () -> get(ctx -> ctx.contentType("text/plain").result(CACHE.stats())));
+            path("pool", () -> get(ctx -> ctx.contentType("text/plain").result(EXECUTOR.stats())));
+            path("metrics", () -> get(ctx -> ctx.contentType("text/plain; version=0.0.4").result(Metrics.scrape())));
+            path("ready", () -> get(ctx -> renderPlainText(ctx, WARMUP.isReady() ? 200 : 503,
+                    WARMUP.isReady() ? "ready" : "warming up")));
+        });
+
+        WARMUP.run();
+        if (Boolean.getBoolean("parsers.warmup.exit")) {
+            app.stop();
+            System.exit(0);
+        }
+    }
+
+    private static void registerMetrics() {
+        Metrics.gauge("parsers_cache_entries", "Parse results held in memory", CACHE::size);
+        Metrics.counter("parsers_cache_requests_total", "Cache lookups by result", CACHE::hits, "result", "hit");
+        Metrics.counter("parsers_cache_requests_total", "Cache lookups by result", CACHE::diskHits,
+                "result", "diskHit");
+        Metrics.counter("parsers_cache_requests_total", "Cache lookups by result", CACHE::misses, "result", "miss");
+        Metrics.counter("parsers_cache_requests_total", "Cache lookups by result", CACHE::coalesced,
+                "result", "coalesced");
+        Metrics.counter("parsers_cache_evictions_total", "Parse results evicted from memory", CACHE::evictions);
+        Metrics.gauge("parsers_pool_queue_depth", "Parse requests waiting for a worker", EXECUTOR::queueDepth);
+        Metrics.gauge("parsers_pool_active_workers", "Workers running a parse", EXECUTOR::activeWorkers);
+        Metrics.counter("parsers_pool_rejected_total", "Parse requests rejected as the pool was saturated",
+                EXECUTOR::rejected);
+        Metrics.gauge("parsers_store_accounts", "Accounts in the period store", STORE::accounts);
+        Metrics.gauge("parsers_store_documents", "Documents in the period store", STORE::documents);
+        Metrics.gauge("parsers_warmup_seconds", "Time spent warming up the parsers at startup", WARMUP::seconds);
+        Metrics.counter("parsers_pool_wait_seconds_total", "Time parse requests spent waiting for a worker",
+                () -> EXECUTOR.totalWaitNanos() / 1e9);
+    }
+
+    private static void parseAsync(Context ctx, Runnable parse) {
+        if (EXECUTOR.isSaturated()) {
+            rejectSaturated(ctx);
+            return;
+        }
+        var started = System.nanoTime();
+        var route = ctx.matchedPath();
+        try {
+            ctx.result(EXECUTOR.submit(() -> {
+                try {
+                    parse.run();
+                } catch (RuntimeException e) {
+                    rejectTooLarge(ctx, DocumentTooLargeException.causeOf(e).orElseThrow(() -> e));
+                }
+            }).whenComplete((result, error) -> observeRequest(route, started, error)));
+        } catch (RejectedExecutionException e) {
+            rejectSaturated(ctx);
+        }
+    }
+
+    /**
+     * Runs a batch on the request thread. Its documents are parsed on the pool, so the batch does not hold a
+     * worker of its own while it waits for them. Rows are written as NDJSON unless another format is asked for.
+     */
+    private static void parseBatch(Context ctx) {
+        if (EXECUTOR.isSaturated()) {
+            rejectSaturated(ctx);
+            return;
+        }
+        var started = System.nanoTime();
+        var format = OutputFormat.of(ctx.queryParam("format"), ctx.header("Accept"), OutputFormat.NDJSON);
+        renderReportHeaders(ctx, format, "batch-report." + format.extension);
+        try (var output = new BufferedOutputStream(ctx.res.getOutputStream(), STREAM_BUFFER_SIZE)) {
+            BATCH.parse(uploadedFiles(ctx), ctx.formParam("dayKwh"), ctx.formParam("nightKwh"), format, output);
+            observeRequest(ctx.matchedPath(), started, null);
+        } catch (IOException e) {
+            observeRequest(ctx.matchedPath(), started, e);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            observeRequest(ctx.matchedPath(), started, e);
+            throw e;
+        }
+    }
+
+    private static void observeRequest(String route, long started, Throwable error) {
+        Metrics.histogram("parsers_request_seconds", "Time to serve a parse request, including queueing",
+                Metrics.SECONDS_BUCKETS, "route", route).observeNanos(System.nanoTime() - started);
+        if (error != null) {
+            Metrics.counter("parsers_request_failures_total", "Parse requests that failed with an error",
+                    "route", route).increment();
+        }
+    }
+
+    private static void rejectSaturated(Context ctx) {
+        LOGGER.warn("Parse pool saturated, rejecting " + ctx.path() + " with " + EXECUTOR.queueDepth() + " queued");
+        ctx.status(503)
+            .header("Retry-After", Long.toString(EXECUTOR.retryAfterSeconds()))
+            .contentType("text/plain")
+            .result("Too many parse requests in progress, try again later");
+    }
+
+    private static void rejectTooLarge(Context ctx, DocumentTooLargeException e) {
+        LOGGER.warn("Rejecting " + ctx.path() + ": " + e.getMessage());
+        Metrics.counter("parsers_documents_too_large_total", "Requests rejected as a document exceeded its limits",
+                "route", String.valueOf(ctx.matchedPath())).increment();
+        renderPlainText(ctx, 413, e.getMessage());
+    }
+
+    private static Optional<InvoiceParser<?>> detectParser(PdfSource file) {
+        try {
+            return ParserRegistry.detect(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static <T extends Serializable> void parseAndRender(Context ctx, InvoiceParser<T> parser, PdfSource file,
+                                                                Map<String, String> parameters) {
+        var parts = new ArrayList<String>();
+        parts.add(file.contentHash());
+        new TreeMap<>(parameters).forEach((name, value) -> parts.add(name + "=" + value));
+        var result = CACHE.get(cacheKey(parser.name(), parts.toArray(String[]::new)),
+                () -> parser.parse(file, parameters));
+        store(ctx, parser.name(), file, parser.usage(result), result);
+        renderRows(ctx, parser.columns(), rows -> parser.write(result, rows), parser.reportName());
+    }
+
+    /**
+     * Renders the report rows of the parse results stored for an account and source parser, of every
+     * document with usage in the requested months.
+     */
+    private static void renderStoredResults(Context ctx) throws IOException {
+        var months = monthRange(ctx);
+        if (months == null) {
+            return;
+        }
+        var parser = ParserRegistry.byName(ctx.pathParam("source"));
+        if (parser.isEmpty()) {
+            renderPlainText(ctx, 404, "Unknown parser " + ctx.pathParam("source"));
+            return;
+        }
+        var results = STORE.results(ctx.pathParam("account"), parser.get().name(), months[0], months[1]);
+        renderRows(ctx, parser.get().columns(), rows -> results.forEach(result -> write(parser.get(), result, rows)),
+                parser.get().reportName());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Serializable> void write(InvoiceParser<T> parser, Serializable result,
+                                                       RowWriter rows) {
+        parser.write((T) result, rows);
+    }
+
+    /**
+     * The <code>from</code> and <code>to</code> months of a store query, by default the last three years. An
+     * invalid month is answered with 400.
+     *
+     * @return the first and last month, or <code>null</code> if the request was answered
+     */
+    private static YearMonth[] monthRange(Context ctx) {
+        try {
+            var to = ctx.queryParam("to") == null ? YearMonth.now() : YearMonth.parse(ctx.queryParam("to"));
+            var from = ctx.queryParam("from") == null
+                    ? to.minusYears(3).plusMonths(1)
+                    : YearMonth.parse(ctx.queryParam("from"));
+            return new YearMonth[] {from, to};
+        } catch (DateTimeParseException e) {
+            renderPlainText(ctx, 400, "Invalid month '" + e.getParsedString() + "', expected yyyy-MM");
+            return null;
+        }
+    }
+
+    private static Map<String, String> formParameters(Context ctx) {
+        var parameters = new HashMap<String, String>();
+        ctx.formParamMap().forEach((name, values) -> {
+            if (!values.isEmpty() && !name.equals("account")) {
+                parameters.put(name, values.get(0));
+            }
         });
+        return parameters;
+    }
+
+    /**
+     * Stores the parse result and usage of a document when the request names the account it belongs to.
+     */
+    private static void store(Context ctx, Class<?> parser, PdfSource file, List<MonthlyUsage> usage,
+                              Serializable result) {
+        store(ctx, parser.getSimpleName(), file, usage, result);
+    }
+
+    private static void store(Context ctx, String parser, PdfSource file, List<MonthlyUsage> usage,
+                              Serializable result) {
+        var account = ctx.formParam("account");
+        if (account == null || account.isBlank()) {
+            return;
+        }
+        try {
+            STORE.add(account, parser, file.contentHash(), usage, result);
+        } catch (IOException e) {
+            LOGGER.error("Failed to store periods of account " + account, e);
+        }
+    }
+
+    private static String cacheKey(Class<?> parser, String... parts) {
+        return cacheKey(parser.getSimpleName(), parts);
+    }
+
+    private static String cacheKey(String parser, String... parts) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            for (var part : parts) {
+                digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return parser + "-" + String.format("%064x", new BigInteger(1, digest.digest()));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
-    private static void renderParserOutput(Context ctx, Consumer<PrintStream> parserCommand, String filename) {
-        var resultStream = new ByteArrayOutputStream();
-        try (var result = new PrintStream(resultStream)) {
-            parserCommand.accept(result);
+    /**
+     * Writes the rows in the format asked for with a <code>format</code> query parameter or the
+     * <code>Accept</code> header, CSV by default.
+     */
+    private static void renderRows(Context ctx, RowSchema columns, Consumer<RowWriter> writer, String reportName) {
+        var format = OutputFormat.of(ctx.queryParam("format"), ctx.header("Accept"));
+        renderReportHeaders(ctx, format, reportName + "." + format.extension);
+        try (var output = ctx.res.getOutputStream()) {
+            var rows = RowWriter.open(format, columns, output);
+            writer.accept(rows);
+            rows.finish();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        renderReport(ctx, new ByteArrayInputStream(resultStream.toByteArray()), filename);
     }
 
-    private static void withUploadedFile(UploadedFile fileUpload, Consumer<Path> processor) {
+    /**
+     * The file parts of a multipart request in the order they were sent, same as
+     * {@link Context#uploadedFiles()} but without hiding where Jetty stored their content.
+     */
+    static List<Part> uploadedFiles(Context ctx) {
+        if (!ctx.isMultipartFormData()) {
+            return List.of();
+        }
         try {
-            var file = Files.createTempFile(fileUpload.getFilename(), fileUpload.getExtension());
-            Files.copy(fileUpload.getContent(), file, StandardCopyOption.REPLACE_EXISTING);
-            try {
-                processor.accept(file);
-            } finally {
-                file.toFile().delete();
+            var files = new ArrayList<Part>();
+            for (var part : ctx.req.getParts()) {
+                if (part.getSubmittedFileName() != null) {
+                    files.add(part);
+                }
             }
+            return files;
         } catch (IOException e) {
-            LOGGER.error("Failed to process file " + fileUpload.getFilename(), e);
+            throw new UncheckedIOException(e);
+        } catch (ServletException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String extension(Part fileUpload) {
+        var filename = fileUpload.getSubmittedFileName();
+        var dot = filename.lastIndexOf('.');
+        return dot < 0 ? "" : filename.substring(dot);
+    }
+
+    private static void withUploadedFile(Part fileUpload, Consumer<PdfSource> processor) {
+        PdfSource source;
+        try {
+            source = readUpload(fileUpload);
+        } catch (IOException e) {
+            LOGGER.error("Failed to process file " + fileUpload.getSubmittedFileName(), e);
             return;
         }
+        processor.accept(source);
+    }
+
+    static PdfSource readUpload(Part fileUpload) throws IOException {
+        UPLOAD_BYTES.observe(fileUpload.getSize());
+        if (fileUpload.getSize() > DocumentLimits.DEFAULT.maxBytes) {
+            throw new DocumentTooLargeException(fileUpload.getSubmittedFileName() + " of " + fileUpload.getSize()
+                    + " bytes exceeds the limit of " + DocumentLimits.DEFAULT.maxBytes + " bytes");
+        }
+        if (fileUpload.getSize() <= UPLOAD_MEMORY_THRESHOLD) {
+            try (var content = fileUpload.getInputStream()) {
+                return PdfSource.of(content.readAllBytes());
+            }
+        }
+        return PdfSource.of(mapUpload(fileUpload));
+    }
+
+    /**
+     * Maps an upload that Jetty has already written to a temporary file past the memory threshold. Writing the
+     * part under a name of our own moves that file rather than copying it, and takes it out of Jetty's cleanup.
+     */
+    private static MappedByteBuffer mapUpload(Part fileUpload) throws IOException {
+        var name = "upload-" + UUID.randomUUID() + extension(fileUpload);
+        var file = UPLOAD_DIRECTORY.resolve(name);
+        try {
+            fileUpload.write(name);
+            try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                // The mapping stays valid after the channel is closed and the file is deleted
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static void renderPlainText(Context ctx, int status, String message) {
+        ctx.status(status).header("Content-Type", "text/plain; charset=utf-8");
+        try (var output = ctx.res.getOutputStream()) {
+            output.write(message.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
-    private static void renderReport(Context context, InputStream result, String filename) {
-        context.result(result)
-            .header("Content-Type", "text/csv; charset=utf-8")
+    private static void renderReportHeaders(Context context, OutputFormat format, String filename) {
+        context.header("Content-Type", format.contentType)
             .header("Content-Disposition","inline; filename=\""+filename+"\"");
     }
 
@@ -0,0 +1,285 @@
+package com.devsoap.parsers.api;
+
+import com.devsoap.parsers.caruna.CarunaParser;
+import com.devsoap.parsers.commons.DocumentLimits;
+import com.devsoap.parsers.commons.DocumentTooLargeException;
+import com.devsoap.parsers.commons.FinnishFields;
+import com.devsoap.parsers.commons.OutputFormat;
+import com.devsoap.parsers.commons.ParserMetrics;
+import com.devsoap.parsers.commons.ParserRegistry;
+import com.devsoap.parsers.commons.PdfSource;
+import com.devsoap.parsers.commons.RowSchema;
+import com.devsoap.parsers.commons.RowWriter;
+import com.devsoap.parsers.helen.HelenParser;
+import com.devsoap.parsers.plugsurfing.PlugSurfingParser;
+import org.apache.log4j.Logger;
+
+import javax.servlet.http.Part;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Parses a batch of invoices, given as separate uploads or as ZIP archives of PDFs. The parser of each
+ * document is detected with {@link ParserRegistry}, documents are parsed in parallel and their rows are
+ * written as soon as each document is done, as rows of {@link #COLUMNS} in any {@link OutputFormat}. A document
+ * that fails to parse produces an error row instead of failing the batch.
+ *
+ * Documents are parsed as separate tasks on the {@link ParseExecutor} of the single document routes, so a
+ * batch shares their workers and queue rather than adding threads of its own. A batch has at most
+ * <code>parsers.batch.parallelism</code> documents queued or in progress, the pool concurrency by default.
+ * When the pool is saturated the batch waits for a worker instead of failing its documents.
+ */
+class BatchParser {
+
+    private static final Logger LOGGER = Logger.getLogger(BatchParser.class);
+    private static final ParserMetrics METRICS = ParserMetrics.of(BatchParser.class);
+
+    /**
+     * The columns of all parsers, a row leaves the columns of other parsers empty. The month of every parser is
+     * written as <code>yyyy-M</code>, see {@link FinnishFields#yearMonthKey(int, int)}. Rows of a document that
+     * failed to parse have only the file, the parser if it was detected, and the error.
+     */
+    static final RowSchema COLUMNS = new RowSchema()
+            .text("file", "file")
+            .text("parser", "parser")
+            .text("month", "month")
+            .decimal("basicPay", "basicPay")
+            .integer("dayEnergyKwh", "dayEnergyKwh")
+            .decimal("dayEnergyEur", "dayEnergyEur")
+            .integer("nightEnergyKwh", "nightEnergyKwh")
+            .decimal("nightEnergyEur", "nightEnergyEur")
+            .integer("transferDayKwh", "transferDayKwh")
+            .decimal("transferDayEur", "transferDayEur")
+            .integer("transferNightKwh", "transferNightKwh")
+            .decimal("transferNightEur", "transferNightEur")
+            .decimal("tax", "tax")
+            .integer("sessions", "sessions")
+            .decimal("unitPrice", "unitPrice")
+            .decimal("amountEur", "amountEur")
+            .decimal("kwh", "kwh")
+            .text("error", "error")
+            .freeze();
+
+    private static final String CARUNA = CarunaParser.class.getSimpleName();
+    private static final String HELEN = HelenParser.class.getSimpleName();
+    private static final String PLUG_SURFING = PlugSurfingParser.class.getSimpleName();
+
+    private static final long SATURATED_RETRY_MILLIS = 50;
+
+    private final ParseExecutor executor;
+    private final int maxInFlight;
+
+    BatchParser(ParseExecutor executor, int parallelism) {
+        this.executor = executor;
+        this.maxInFlight = Math.max(1, parallelism);
+    }
+
+    static BatchParser fromSystemProperties(ParseExecutor executor) {
+        return new BatchParser(executor, Integer.getInteger("parsers.batch.parallelism", executor.concurrency()));
+    }
+
+    /**
+     * Writes the rows of the documents to the output with the writer of the format, and finishes it. The
+     * output is flushed after each document.
+     */
+    void parse(List<Part> uploads, String dayKwhPeriods, String nightKwhPeriods, OutputFormat format,
+               OutputStream output) throws IOException {
+        var daySiirtoKwh = kwhPeriods(dayKwhPeriods);
+        var nightSiirtoKwh = kwhPeriods(nightKwhPeriods);
+        var rows = RowWriter.open(format, COLUMNS, output);
+        var batch = new Batch(rows, daySiirtoKwh, nightSiirtoKwh);
+
+        for (var upload : uploads) {
+            if (isZip(upload)) {
+                try (var zip = new ZipInputStream(new BufferedInputStream(upload.getInputStream()))) {
+                    ZipEntry entry;
+                    while ((entry = zip.getNextEntry()) != null) {
+                        if (!entry.isDirectory() && entry.getName().toLowerCase(Locale.ROOT).endsWith(".pdf")) {
+                            batch.submit(entry.getName(), readEntry(zip));
+                        }
+                    }
+                } catch (IOException e) {
+                    batch.write(error(upload.getSubmittedFileName(), e));
+                }
+            } else {
+                try {
+                    batch.submit(upload.getSubmittedFileName(), Api.readUpload(upload));
+                } catch (IOException | DocumentTooLargeException e) {
+                    // The upload is rejected on its size alone, as the document is never opened
+                    batch.write(error(upload.getSubmittedFileName(), e));
+                }
+            }
+        }
+        batch.drain();
+        rows.finish();
+    }
+
+    /**
+     * The documents of a batch in progress. Workers only parse, the rows of each document are written on the
+     * thread running the batch, as the row writer is not thread safe.
+     */
+    private class Batch {
+        private final RowWriter rows;
+        private final Map<String, Integer> daySiirtoKwh;
+        private final Map<String, Integer> nightSiirtoKwh;
+        private final BlockingQueue<Consumer<RowWriter>> completed = new LinkedBlockingQueue<>();
+        private int inFlight = 0;
+
+        private Batch(RowWriter rows, Map<String, Integer> daySiirtoKwh, Map<String, Integer> nightSiirtoKwh) {
+            this.rows = rows;
+            this.daySiirtoKwh = daySiirtoKwh;
+            this.nightSiirtoKwh = nightSiirtoKwh;
+        }
+
+        private void submit(String file, PdfSource source) throws IOException {
+            while (inFlight >= maxInFlight) {
+                writeNextCompleted();
+            }
+            while (true) {
+                try {
+                    executor.submit(() -> completed.add(parseFile(file, source, daySiirtoKwh, nightSiirtoKwh)))
+                            .whenComplete((result, failure) -> {
+                                if (failure != null) {
+                                    completed.add(error(file, failure));
+                                }
+                            });
+                    inFlight++;
+                    return;
+                } catch (RejectedExecutionException e) {
+                    awaitWorker();
+                }
+            }
+        }
+
+        /**
+         * Waits for a document of this batch to complete, or for a while if none is in progress, before a
+         * rejected document is submitted again.
+         */
+        private void awaitWorker() throws IOException {
+            if (inFlight > 0) {
+                writeNextCompleted();
+                return;
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(SATURATED_RETRY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Batch was interrupted");
+            }
+        }
+
+        private void drain() throws IOException {
+            while (inFlight > 0) {
+                writeNextCompleted();
+            }
+        }
+
+        private void writeNextCompleted() throws IOException {
+            try {
+                var document = completed.take();
+                inFlight--;
+                write(document);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Batch was interrupted");
+            }
+        }
+
+        private void write(Consumer<RowWriter> document) {
+            document.accept(rows);
+            rows.flush();
+        }
+    }
+
+    /**
+     * Parses a document and returns the writing of its rows.
+     */
+    private static Consumer<RowWriter> parseFile(String file, PdfSource source, Map<String, Integer> daySiirtoKwh,
+                                                 Map<String, Integer> nightSiirtoKwh) {
+        try {
+            var detected = ParserRegistry.detect(source);
+            if (detected.isEmpty()) {
+                METRICS.failures.increment();
+                return error(file, null, "Unrecognized invoice");
+            }
+            var parser = detected.get().name();
+            if (parser.equals(CARUNA)) {
+                var periods = CarunaParser.parse(source);
+                return rows -> periods.values().forEach(p -> rows
+                        .text(file).text(CARUNA).text(FinnishFields.yearMonthKey(p.year, p.month))
+                        .decimal(p.basicPay)
+                        .empty().empty().empty().empty()
+                        .integer(p.transferDayKwh).decimal(p.transferDayTotal)
+                        .integer(p.transferNightKwh).decimal(p.transferNightTotal)
+                        .decimal(p.tax)
+                        .empty().empty().empty().empty()
+                        .empty()
+                        .endRow());
+            }
+            if (parser.equals(HELEN)) {
+                var periods = HelenParser.parse(source, daySiirtoKwh, nightSiirtoKwh);
+                return rows -> periods.values().forEach(p -> rows
+                        .text(file).text(HELEN).text(FinnishFields.yearMonthKey(p.year, p.month))
+                        .decimal(p.basicPay)
+                        .integer(p.dayEnergy).decimal(p.dayEnergyEur)
+                        .integer(p.nightEnergy).decimal(p.nightEnergyEur)
+                        .empty().empty().empty().empty().empty()
+                        .empty().empty().empty().empty()
+                        .empty()
+                        .endRow());
+            }
+            if (parser.equals(PLUG_SURFING)) {
+                var totals = PlugSurfingParser.totals(source);
+                return rows -> totals.forEach((month, total) -> rows
+                        .text(file).text(PLUG_SURFING).text(month)
+                        .empty().empty().empty().empty().empty()
+                        .empty().empty().empty().empty().empty()
+                        .integer(total.quantity).decimal(total.unitPrice).decimal(total.amountEur)
+                        .decimal(total.kwh)
+                        .empty()
+                        .endRow());
+            }
+            return error(file, parser, "Batch output is not supported for " + parser);
+        } catch (Exception e) {
+            LOGGER.warn("Failed to parse " + file + " in batch", e);
+            return error(file, e);
+        }
+    }
+
+    private static Consumer<RowWriter> error(String file, Throwable e) {
+        var failure = DocumentTooLargeException.causeOf(e).<Throwable>map(tooLarge -> tooLarge).orElse(e);
+        return error(file, null, String.valueOf(failure.getMessage()));
+    }
+
+    private static Consumer<RowWriter> error(String file, String parser, String message) {
+        return rows -> {
+            rows.text(file).text(parser);
+            for (var column = 2; column < COLUMNS.size() - 1; column++) {
+                rows.empty();
+            }
+            rows.text(message).endRow();
+        };
+    }
+
+    /**
+     * Reads a PDF from the archive, at most one byte over the document byte limit. An oversized entry is not
+     * read into memory whole, and fails to open like any other document over the limit.
+     */
+    private static PdfSource readEntry(ZipInputStream zip) throws IOException {
+        return PdfSource.of(zip.readNBytes((int) Math.min(Integer.MAX_VALUE - 8, DocumentLimits.DEFAULT.maxBytes + 1)));
+    }
+
+    private static boolean isZip(Part upload) {
+        return ".zip".equalsIgnoreCase(Api.extension(upload))
+                || "application/zip".equals(upload.getContentType())
+                || "application/x-zip-compressed".equals(upload.getContentType());
+    }
+
+    private static Map<String, Integer> kwhPeriods(String kwhPeriods) {
+        return kwhPeriods == null || kwhPeriods.isBlank() ? Map.of() : HelenParser.parseKwhPeriods(kwhPeriods);
+    }
+}
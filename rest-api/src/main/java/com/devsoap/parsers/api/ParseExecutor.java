@@ -0,0 +1,174 @@
+package com.devsoap.parsers.api;
+
+import com.devsoap.parsers.commons.PageTextExtractor;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Runs parse requests on a fixed number of worker threads with a bounded wait queue. When both are full new
+ * work is rejected immediately instead of piling up on the heap.
+ *
+ * A request that parses two documents at once, e.g. a Caruna and a Helen invoice, reads the second one on
+ * {@link #companionReads()}. Each worker waits for at most one such read, so that pool has a thread per worker.
+ */
+class ParseExecutor {
+
+    private final int concurrency;
+    private final int queueCapacity;
+    private final ThreadPoolExecutor executor;
+    private final ThreadPoolExecutor companionReads;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder serviceNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    ParseExecutor(int concurrency, int queueCapacity) {
+        this.concurrency = concurrency;
+        this.queueCapacity = Math.max(1, queueCapacity);
+        var threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(concurrency, concurrency, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(this.queueCapacity), runnable -> {
+                    var thread = new Thread(runnable, "parse-worker-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        var readerCount = new AtomicInteger();
+        this.companionReads = new ThreadPoolExecutor(concurrency, concurrency, 30L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    var thread = new Thread(runnable, "companion-reader-" + readerCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.companionReads.allowCoreThreadTimeOut(true);
+    }
+
+    static ParseExecutor fromSystemProperties() {
+        var concurrency = Integer.getInteger("parsers.pool.concurrency", Runtime.getRuntime().availableProcessors());
+        return new ParseExecutor(concurrency, Integer.getInteger("parsers.pool.queue", concurrency * 4));
+    }
+
+    /**
+     * Schedules the task.
+     *
+     * @throws RejectedExecutionException
+     *      if all workers are busy and the wait queue is full
+     */
+    CompletableFuture<Void> submit(Runnable task) {
+        var queued = System.nanoTime();
+        var future = new CompletableFuture<Void>();
+        try {
+            executor.execute(() -> {
+                var started = System.nanoTime();
+                recordWait(started - queued);
+                try {
+                    task.run();
+                    future.complete(null);
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                } finally {
+                    serviceNanos.add(System.nanoTime() - started);
+                    completed.increment();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw e;
+        }
+        submitted.increment();
+        return future;
+    }
+
+    /**
+     * Reads the second document of a request that parses two at once, while the worker parses the first.
+     */
+    Executor companionReads() {
+        return companionReads;
+    }
+
+    boolean isSaturated() {
+        return executor.getActiveCount() >= concurrency && executor.getQueue().size() >= queueCapacity;
+    }
+
+    /**
+     * Estimated number of seconds until a worker is free for a new request.
+     */
+    long retryAfterSeconds() {
+        var done = completed.sum();
+        if (done == 0) {
+            return 1;
+        }
+        var averageServiceNanos = serviceNanos.sum() / done;
+        var backlog = executor.getQueue().size() + executor.getActiveCount();
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(averageServiceNanos * backlog / concurrency));
+    }
+
+    int queueDepth() {
+        return executor.getQueue().size();
+    }
+
+    int activeWorkers() {
+        return executor.getActiveCount();
+    }
+
+    int concurrency() {
+        return concurrency;
+    }
+
+    long submitted() {
+        return submitted.sum();
+    }
+
+    long rejected() {
+        return rejected.sum();
+    }
+
+    long completed() {
+        return completed.sum();
+    }
+
+    long totalWaitNanos() {
+        return waitNanos.sum();
+    }
+
+    long maxWaitNanos() {
+        return maxWaitNanos.get();
+    }
+
+    /**
+     * The pool statistics, followed by those of the executor the page ranges of large documents are extracted on.
+     */
+    String stats() {
+        var done = completed();
+        var stats = new TreeMap<String, Long>(Map.of(
+                "concurrency", (long) concurrency,
+                "queueCapacity", (long) queueCapacity,
+                "queueDepth", (long) queueDepth(),
+                "activeWorkers", (long) activeWorkers(),
+                "submitted", submitted(),
+                "rejected", rejected(),
+                "completed", done,
+                "averageWaitMillis", done == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalWaitNanos() / done),
+                "maxWaitMillis", TimeUnit.NANOSECONDS.toMillis(maxWaitNanos())));
+        stats.put("companionActiveReads", (long) companionReads.getActiveCount());
+        stats.put("extractionThreads", (long) PageTextExtractor.threads());
+        stats.put("extractionActiveThreads", (long) PageTextExtractor.activeThreads());
+        stats.put("extractionQueuedRanges", (long) PageTextExtractor.queuedRanges());
+        return stats.entrySet().stream()
+                .map(e -> e.getKey() + "=" + e.getValue())
+                .collect(Collectors.joining("\n", "", "\n"));
+    }
+
+    private void recordWait(long nanos) {
+        waitNanos.add(nanos);
+        maxWaitNanos.accumulateAndGet(nanos, Math::max);
+    }
+}
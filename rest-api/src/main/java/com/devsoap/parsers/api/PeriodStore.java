@@ -0,0 +1,358 @@
+package com.devsoap.parsers.api;
+
+import com.devsoap.parsers.commons.MonthlyUsage;
+import org.apache.log4j.Logger;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+/**
+ * Parse results and monthly usage of invoices per account, so usage over long periods and the parsed periods
+ * and sessions can be queried without the PDFs.
+ *
+ * Each document is appended to a log file in the configured directory as one record holding its monthly
+ * usage and its serialized parse result. Usage is indexed in memory by account, month and source parser, and
+ * the position of each result in the log by account and source, so results are only read when queried. On
+ * startup the log is memory mapped and scanned to rebuild the index, a torn record at the end of the log from
+ * an interrupted write is cut off. Appends are forced to disk before they are acknowledged unless
+ * <code>parsers.store.sync</code> is <code>false</code>. A document is stored only once per account, however
+ * many times it is uploaded. Without a directory the store only lives in memory.
+ */
+class PeriodStore {
+
+    private static final Logger LOGGER = Logger.getLogger(PeriodStore.class);
+    private static final String LOG_FILE = "periods.log";
+    /**
+     * Stored results are maps of the parsers' own result classes, nothing else is read back from the log.
+     */
+    private static final ObjectInputFilter RESULT_FILTER = ObjectInputFilter.Config.createFilter(
+            "maxdepth=10;java.base/*;com.devsoap.parsers.**;!*");
+
+    private final FileChannel log;
+    private final boolean sync;
+    private final Map<String, NavigableMap<Integer, Map<String, Aggregate>>> index = new HashMap<>();
+    private final Map<String, List<StoredResult>> results = new HashMap<>();
+    private final Set<String> documents = new HashSet<>();
+
+    private static class Aggregate {
+        private double kwh = 0.0;
+        private double eur = 0.0;
+        private int documents = 0;
+    }
+
+    /**
+     * The parse result of a document, in memory without a log and otherwise read from the log when queried.
+     */
+    private static class StoredResult {
+        private final int firstMonth;
+        private final int lastMonth;
+        private final Serializable result;
+        private final long position;
+        private final int length;
+
+        private StoredResult(int firstMonth, int lastMonth, Serializable result, long position, int length) {
+            this.firstMonth = firstMonth;
+            this.lastMonth = lastMonth;
+            this.result = result;
+            this.position = position;
+            this.length = length;
+        }
+    }
+
+    static class Row {
+        final String source;
+        final YearMonth month;
+        final double kwh;
+        final double eur;
+        final int documents;
+
+        private Row(String source, YearMonth month, Aggregate aggregate) {
+            this.source = source;
+            this.month = month;
+            this.kwh = aggregate.kwh;
+            this.eur = aggregate.eur;
+            this.documents = aggregate.documents;
+        }
+    }
+
+    PeriodStore(Path directory) throws IOException {
+        this(directory, true);
+    }
+
+    /**
+     * @param sync
+     *      whether appends are forced to disk before {@link #add} returns
+     */
+    PeriodStore(Path directory, boolean sync) throws IOException {
+        this.sync = sync;
+        if (directory == null) {
+            this.log = null;
+            return;
+        }
+        Files.createDirectories(directory);
+        this.log = FileChannel.open(directory.resolve(LOG_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        load();
+    }
+
+    static PeriodStore fromSystemProperties() {
+        var directory = System.getProperty("parsers.store.directory");
+        try {
+            return new PeriodStore(directory == null ? null : Path.of(directory),
+                    Boolean.parseBoolean(System.getProperty("parsers.store.sync", "true")));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open period store in " + directory, e);
+        }
+    }
+
+    /**
+     * Stores the parse result and the usage of a document. Months without a date are skipped.
+     *
+     * @return <code>false</code> if the document was already stored for the account
+     */
+    synchronized boolean add(String account, String source, String documentHash, List<MonthlyUsage> usage,
+                             Serializable result) throws IOException {
+        var documentKey = documentKey(account, source, documentHash);
+        if (documents.contains(documentKey)) {
+            return false;
+        }
+        var dated = usage.stream().filter(month -> month.year > 0 && month.month >= 1 && month.month <= 12)
+                .collect(Collectors.toList());
+        if (log == null) {
+            indexResult(account, source, dated, result, -1, 0);
+        } else {
+            var serialized = serialize(result);
+            var position = append(account, source, documentHash, dated, serialized);
+            indexResult(account, source, dated, null, position, serialized.length);
+        }
+        documents.add(documentKey);
+        dated.forEach(month -> index(account, source, month));
+        return true;
+    }
+
+    /**
+     * Appends the record of a document and forces it to disk. If the write fails the log is cut back to where
+     * it was, so a partly written document neither hides the records appended after it nor is counted as stored.
+     *
+     * @return the position of the serialized result in the log
+     */
+    private long append(String account, String source, String documentHash, List<MonthlyUsage> usage,
+                        byte[] result) throws IOException {
+        var record = new ByteArrayOutputStream();
+        var resultOffset = writeRecord(record, account, source, documentHash, usage, result);
+        var end = log.size();
+        var buffer = ByteBuffer.wrap(record.toByteArray());
+        try {
+            while (buffer.hasRemaining()) {
+                log.write(buffer, end + buffer.position());
+            }
+            if (sync) {
+                log.force(false);
+            }
+        } catch (IOException e) {
+            try {
+                log.truncate(end);
+            } catch (IOException truncateFailure) {
+                e.addSuppressed(truncateFailure);
+            }
+            throw e;
+        }
+        return end + resultOffset;
+    }
+
+    /**
+     * The usage of an account per month and source parser, in month order.
+     *
+     * @param source
+     *      the source parser name, or <code>null</code> for all sources
+     */
+    synchronized List<Row> query(String account, YearMonth from, YearMonth to, String source) {
+        var rows = new ArrayList<Row>();
+        var months = index.get(account);
+        if (months == null) {
+            return rows;
+        }
+        months.subMap(monthIndex(from), true, monthIndex(to), true).forEach((month, sources) ->
+                new TreeMap<>(sources).forEach((name, aggregate) -> {
+                    if (source == null || source.equals(name)) {
+                        rows.add(new Row(name, YearMonth.of(month / 12, month % 12 + 1), aggregate));
+                    }
+                }));
+        return rows;
+    }
+
+    /**
+     * The parse results of the documents of an account and source parser with usage in the given months, in
+     * the order they were stored.
+     */
+    synchronized List<Serializable> results(String account, String source, YearMonth from, YearMonth to)
+            throws IOException {
+        var found = new ArrayList<Serializable>();
+        for (var stored : results.getOrDefault(resultKey(account, source), List.of())) {
+            if (stored.lastMonth >= monthIndex(from) && stored.firstMonth <= monthIndex(to)) {
+                found.add(stored.result != null ? stored.result : read(stored));
+            }
+        }
+        return found;
+    }
+
+    synchronized int accounts() {
+        return index.size();
+    }
+
+    synchronized int documents() {
+        return documents.size();
+    }
+
+    private void load() throws IOException {
+        var size = log.size();
+        if (size == 0) {
+            return;
+        }
+        var buffer = log.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        var records = 0;
+        while (buffer.remaining() >= Integer.BYTES) {
+            var start = buffer.position();
+            var length = buffer.getInt();
+            if (length <= 0 || buffer.remaining() < length + Long.BYTES) {
+                buffer.position(start);
+                break;
+            }
+            var payloadPosition = buffer.position();
+            var payload = new byte[length];
+            buffer.get(payload);
+            var checksum = new CRC32();
+            checksum.update(payload);
+            if (buffer.getLong() != checksum.getValue()) {
+                buffer.position(start);
+                break;
+            }
+            readRecord(payload, payloadPosition);
+            records++;
+        }
+        if (buffer.position() < size) {
+            LOGGER.warn("Truncating " + (size - buffer.position()) + " bytes of incomplete records from the "
+                    + "period store");
+            log.truncate(buffer.position());
+        }
+        LOGGER.info("Loaded " + records + " documents of " + index.size() + " accounts from the period store");
+    }
+
+    /**
+     * @param payloadPosition
+     *      the position of the payload in the log
+     */
+    private void readRecord(byte[] payload, long payloadPosition) throws IOException {
+        var in = new DataInputStream(new ByteArrayInputStream(payload));
+        var account = in.readUTF();
+        var source = in.readUTF();
+        var documentHash = in.readUTF();
+        var months = in.readInt();
+        var usage = new ArrayList<MonthlyUsage>(months);
+        for (var i = 0; i < months; i++) {
+            usage.add(new MonthlyUsage(in.readInt(), in.readByte(), in.readDouble(), in.readDouble()));
+        }
+        var resultLength = in.readInt();
+        var resultPosition = payloadPosition + payload.length - in.available();
+        documents.add(documentKey(account, source, documentHash));
+        usage.forEach(month -> index(account, source, month));
+        indexResult(account, source, usage, null, resultPosition, resultLength);
+    }
+
+    /**
+     * Writes the record of a document: the length of the payload, the payload and its CRC-32.
+     *
+     * @return the offset of the serialized result in the record
+     */
+    private static int writeRecord(ByteArrayOutputStream record, String account, String source,
+                                   String documentHash, List<MonthlyUsage> usage, byte[] result)
+            throws IOException {
+        var payload = new ByteArrayOutputStream();
+        var out = new DataOutputStream(payload);
+        out.writeUTF(account);
+        out.writeUTF(source);
+        out.writeUTF(documentHash);
+        out.writeInt(usage.size());
+        for (var month : usage) {
+            out.writeInt(month.year);
+            out.writeByte(month.month);
+            out.writeDouble(month.kwh);
+            out.writeDouble(month.eur);
+        }
+        out.writeInt(result.length);
+        var resultOffset = Integer.BYTES + out.size();
+        out.write(result);
+        out.flush();
+
+        var checksum = new CRC32();
+        checksum.update(payload.toByteArray());
+        var header = new DataOutputStream(record);
+        header.writeInt(payload.size());
+        payload.writeTo(header);
+        header.writeLong(checksum.getValue());
+        header.flush();
+        return resultOffset;
+    }
+
+    private void indexResult(String account, String source, List<MonthlyUsage> usage, Serializable result,
+                             long position, int length) {
+        var months = usage.stream().mapToInt(month -> month.year * 12 + month.month - 1).summaryStatistics();
+        if (months.getCount() == 0) {
+            return;
+        }
+        results.computeIfAbsent(resultKey(account, source), key -> new ArrayList<>())
+                .add(new StoredResult(months.getMin(), months.getMax(), result, position, length));
+    }
+
+    private Serializable read(StoredResult stored) throws IOException {
+        var buffer = ByteBuffer.allocate(stored.length);
+        while (buffer.hasRemaining()) {
+            if (log.read(buffer, stored.position + buffer.position()) < 0) {
+                throw new EOFException("Period store ends inside a stored result");
+            }
+        }
+        try (var in = new ObjectInputStream(new ByteArrayInputStream(buffer.array()))) {
+            in.setObjectInputFilter(RESULT_FILTER);
+            return (Serializable) in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Stored result of an unknown class", e);
+        }
+    }
+
+    private static byte[] serialize(Serializable result) throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        try (var out = new ObjectOutputStream(bytes)) {
+            out.writeObject(result);
+        }
+        return bytes.toByteArray();
+    }
+
+    private void index(String account, String source, MonthlyUsage usage) {
+        var aggregate = index.computeIfAbsent(account, a -> new TreeMap<>())
+                .computeIfAbsent(usage.year * 12 + usage.month - 1, m -> new HashMap<>())
+                .computeIfAbsent(source, s -> new Aggregate());
+        aggregate.kwh += usage.kwh;
+        aggregate.eur += usage.eur;
+        aggregate.documents++;
+    }
+
+    private static int monthIndex(YearMonth month) {
+        return month.getYear() * 12 + month.getMonthValue() - 1;
+    }
+
+    private static String resultKey(String account, String source) {
+        return account + '\0' + source;
+    }
+
+    private static String documentKey(String account, String source, String documentHash) {
+        return account + '\0' + source + '\0' + documentHash;
+    }
+}
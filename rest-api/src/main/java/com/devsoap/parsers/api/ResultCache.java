@@ -0,0 +1,351 @@
+package com.devsoap.parsers.api;
+
+import com.devsoap.parsers.caruna.CarunaParser;
+import com.devsoap.parsers.helen.HelenParser;
+import com.devsoap.parsers.plugsurfing.PlugSurfingParser;
+import org.apache.log4j.Logger;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Bounded LRU cache of parse results keyed by the content hash of the uploaded documents. Entries expire after
+ * a TTL. When a directory is configured, results are also written there so they survive restarts and memory
+ * evictions.
+ *
+ * Concurrent misses on the same key wait for the first one to parse the document instead of parsing it again.
+ * The files of the disk tier are indexed in memory in the order they were written, and the oldest are deleted
+ * in batches once there are more than the configured number. Only parse result classes are read back from
+ * the disk tier.
+ *
+ * With <code>parsers.cache.enabled=false</code> every lookup parses the document, concurrent lookups of the
+ * same key included.
+ */
+class ResultCache {
+
+    private static final Logger LOGGER = Logger.getLogger(ResultCache.class);
+
+    private static final ObjectInputFilter RESULT_CLASSES = ObjectInputFilter.Config.createFilter(String.join(";",
+            "maxdepth=20",
+            "java.lang.*",
+            "java.time.*",
+            "java.util.HashMap",
+            "java.util.ArrayList",
+            "java.util.Map$Entry",
+            CarunaParser.Period.class.getName(),
+            HelenParser.Period.class.getName(),
+            HelenParser.Readings.class.getName(),
+            HelenParser.Reading.class.getName(),
+            PlugSurfingParser.Session.class.getName(),
+            "!*"));
+
+    private final boolean enabled;
+    private final int maxEntries;
+    private final Duration ttl;
+    private final Path directory;
+    private final int maxDiskEntries;
+    private final int pruneBatch;
+    private final Map<String, CachedResult> entries;
+    private final Map<String, CompletableFuture<Object>> loading = new ConcurrentHashMap<>();
+    private Map<String, Long> diskEntries = null;
+    private long diskBytes = 0;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private static class CachedResult {
+        private final Object value;
+        private final long expires;
+
+        private CachedResult(Object value, long expires) {
+            this.value = value;
+            this.expires = expires;
+        }
+    }
+
+    ResultCache(int maxEntries, Duration ttl, Path directory, int maxDiskEntries) {
+        this(true, maxEntries, ttl, directory, maxDiskEntries);
+    }
+
+    private ResultCache(boolean enabled, int maxEntries, Duration ttl, Path directory, int maxDiskEntries) {
+        this.enabled = enabled;
+        this.maxEntries = maxEntries;
+        this.ttl = ttl;
+        this.directory = directory;
+        this.maxDiskEntries = maxDiskEntries;
+        this.pruneBatch = Math.max(1, maxDiskEntries / 10);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResult> eldest) {
+                var evict = size() > ResultCache.this.maxEntries;
+                if (evict) {
+                    evictions.increment();
+                }
+                return evict;
+            }
+        };
+    }
+
+    /**
+     * A cache that holds nothing and does not share results between concurrent lookups.
+     */
+    static ResultCache disabled() {
+        return new ResultCache(false, 0, Duration.ZERO, null, 0);
+    }
+
+    static ResultCache fromSystemProperties() {
+        if (!Boolean.parseBoolean(System.getProperty("parsers.cache.enabled", "true"))) {
+            return disabled();
+        }
+        var directory = System.getProperty("parsers.cache.directory");
+        return new ResultCache(
+                Integer.getInteger("parsers.cache.entries", 256),
+                Duration.parse(System.getProperty("parsers.cache.ttl", "PT1H")),
+                directory == null ? null : Path.of(directory),
+                Integer.getInteger("parsers.cache.diskEntries", 10_000));
+    }
+
+    @SuppressWarnings("unchecked")
+    <T extends Serializable> T get(String key, Supplier<T> parser) {
+        if (!enabled) {
+            misses.increment();
+            return parser.get();
+        }
+        var now = System.currentTimeMillis();
+        synchronized (entries) {
+            var cached = entries.get(key);
+            if (cached != null && cached.expires > now) {
+                hits.increment();
+                return (T) cached.value;
+            } else if (cached != null) {
+                entries.remove(key);
+                evictions.increment();
+            }
+        }
+
+        var load = new CompletableFuture<Object>();
+        var inProgress = loading.putIfAbsent(key, load);
+        if (inProgress != null) {
+            coalesced.increment();
+            return (T) await(inProgress);
+        }
+        try {
+            var value = load(key, now, parser);
+            load.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, load);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends Serializable> T load(String key, long now, Supplier<T> parser) {
+        var value = (T) readFromDisk(key, now);
+        if (value != null) {
+            diskHits.increment();
+        } else {
+            misses.increment();
+            value = parser.get();
+            writeToDisk(key, value);
+        }
+
+        synchronized (entries) {
+            entries.put(key, new CachedResult(value, now + ttl.toMillis()));
+        }
+        return value;
+    }
+
+    long hits() {
+        return hits.sum();
+    }
+
+    long diskHits() {
+        return diskHits.sum();
+    }
+
+    long misses() {
+        return misses.sum();
+    }
+
+    long evictions() {
+        return evictions.sum();
+    }
+
+    long coalesced() {
+        return coalesced.sum();
+    }
+
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    String stats() {
+        return Map.of(
+                "entries", (long) size(),
+                "hits", hits(),
+                "diskHits", diskHits(),
+                "misses", misses(),
+                "coalesced", coalesced(),
+                "evictions", evictions(),
+                "diskEntries", (long) diskEntries(),
+                "diskBytes", diskBytes())
+                .entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .map(e -> e.getKey() + "=" + e.getValue())
+                .collect(Collectors.joining("\n", "", "\n"));
+    }
+
+    private synchronized int diskEntries() {
+        return diskEntries == null ? 0 : diskEntries.size();
+    }
+
+    private synchronized long diskBytes() {
+        return diskBytes;
+    }
+
+    private Object readFromDisk(String key, long now) {
+        if (directory == null) {
+            return null;
+        }
+        var file = directory.resolve(key);
+        try {
+            if (!Files.exists(file)) {
+                return null;
+            }
+            if (Files.getLastModifiedTime(file).toMillis() + ttl.toMillis() <= now) {
+                Files.deleteIfExists(file);
+                removeDiskEntry(key);
+                return null;
+            }
+            try (var in = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                in.setObjectInputFilter(RESULT_CLASSES);
+                return in.readObject();
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            LOGGER.warn("Failed to read cached result " + file, e);
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, Serializable value) {
+        if (directory == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            var temp = Files.createTempFile(directory, key, ".tmp");
+            try (var out = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeObject(value);
+            }
+            var size = Files.size(temp);
+            Files.move(temp, directory.resolve(key), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            for (var file : addDiskEntry(key, size)) {
+                Files.deleteIfExists(directory.resolve(file));
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Failed to write cached result " + key, e);
+        }
+    }
+
+    /**
+     * Records a written file.
+     *
+     * @return the files to delete, the oldest down to {@link #pruneBatch} below the limit once it is exceeded
+     */
+    private synchronized List<String> addDiskEntry(String key, long size) throws IOException {
+        loadDiskEntries();
+        var previous = diskEntries.remove(key);
+        diskBytes += size - (previous == null ? 0 : previous);
+        diskEntries.put(key, size);
+        var pruned = new ArrayList<String>();
+        if (diskEntries.size() > maxDiskEntries) {
+            var iterator = diskEntries.entrySet().iterator();
+            while (diskEntries.size() > Math.max(0, maxDiskEntries - pruneBatch)) {
+                var oldest = iterator.next();
+                diskBytes -= oldest.getValue();
+                pruned.add(oldest.getKey());
+                iterator.remove();
+            }
+        }
+        return pruned;
+    }
+
+    private synchronized void removeDiskEntry(String key) {
+        if (diskEntries != null) {
+            var size = diskEntries.remove(key);
+            diskBytes -= size == null ? 0 : size;
+        }
+    }
+
+    /**
+     * Indexes the files left by earlier runs, oldest first, the first time a file is written.
+     */
+    private void loadDiskEntries() throws IOException {
+        if (diskEntries != null) {
+            return;
+        }
+        diskEntries = new LinkedHashMap<>();
+        try (var files = Files.list(directory)) {
+            var cached = files.filter(file -> !file.getFileName().toString().endsWith(".tmp"))
+                    .sorted(Comparator.comparingLong(ResultCache::lastModified))
+                    .collect(Collectors.toList());
+            for (var file : cached) {
+                var size = size(file);
+                diskEntries.put(file.getFileName().toString(), size);
+                diskBytes += size;
+            }
+        }
+    }
+
+    private static Object await(CompletableFuture<Object> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
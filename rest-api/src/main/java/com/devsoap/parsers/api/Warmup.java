@@ -0,0 +1,80 @@
+package com.devsoap.parsers.api;
+
+import com.devsoap.parsers.commons.InvoiceParser;
+import com.devsoap.parsers.commons.ParserRegistry;
+import com.devsoap.parsers.commons.PdfSource;
+import com.devsoap.parsers.composites.CarunaHelenParser;
+import com.devsoap.parsers.generator.SyntheticInvoices;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs synthetic invoices through detection and every parser before the API reports itself ready, so class
+ * loading, iText font and encoding setup and JIT compilation of the parsers are done before the first real
+ * request. Results are not cached and the period store is not touched.
+ */
+class Warmup {
+
+    private static final Logger LOGGER = Logger.getLogger(Warmup.class);
+    private static final int PAGES = 2;
+
+    private final int iterations;
+    private final Executor companionReads;
+    private volatile boolean ready = false;
+    private volatile long durationNanos = 0;
+
+    Warmup(int iterations, Executor companionReads) {
+        this.iterations = iterations;
+        this.companionReads = companionReads;
+    }
+
+    static Warmup fromSystemProperties(ParseExecutor executor) {
+        return new Warmup(Integer.getInteger("parsers.warmup.iterations", 20), executor.companionReads());
+    }
+
+    void run() {
+        var started = System.nanoTime();
+        try (var discard = new PrintStream(OutputStream.nullOutputStream())) {
+            var caruna = PdfSource.of(SyntheticInvoices.caruna(SyntheticInvoices.MAX_MONTHS, PAGES));
+            var helen = PdfSource.of(SyntheticInvoices.helen(SyntheticInvoices.MAX_MONTHS, PAGES));
+            var plugSurfing = PdfSource.of(SyntheticInvoices.plugSurfing(PAGES));
+            for (var i = 0; i < iterations; i++) {
+                for (var source : List.of(caruna, helen, plugSurfing)) {
+                    var parser = ParserRegistry.detect(source).orElseThrow(() ->
+                            new IllegalStateException("No parser detected for a synthetic invoice"));
+                    parse(parser, source, discard);
+                }
+                var periods = CarunaHelenParser.parse(caruna, helen, companionReads);
+                CarunaHelenParser.print(periods.caruna, periods.helen, discard);
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Warmup failed, serving requests without it", e);
+        } finally {
+            durationNanos = System.nanoTime() - started;
+            ready = true;
+        }
+        LOGGER.info(String.format("Warmed up %d iterations in %d ms", iterations, durationNanos / 1_000_000));
+    }
+
+    boolean isReady() {
+        return ready;
+    }
+
+    double seconds() {
+        return durationNanos / 1e9;
+    }
+
+    private static <T extends Serializable> void parse(InvoiceParser<T> parser, PdfSource source,
+                                                       PrintStream output) {
+        var result = parser.parse(source, Map.of());
+        parser.print(result, output);
+        parser.usage(result);
+    }
+}
@@ -0,0 +1,138 @@
+package com.devsoap.parsers.api;
+
+import com.devsoap.parsers.commons.MonthlyUsage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.Serializable;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PeriodStoreTest {
+
+    private static final YearMonth FROM = YearMonth.of(2021, 1);
+    private static final YearMonth TO = YearMonth.of(2021, 12);
+    private static final List<MonthlyUsage> JANUARY = List.of(new MonthlyUsage(2021, 1, 863, 42.46));
+    private static final List<MonthlyUsage> FEBRUARY = List.of(new MonthlyUsage(2021, 2, 779, 40.45));
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void reloadsStoredUsage() throws IOException {
+        var store = new PeriodStore(directory);
+        assertTrue(store.add("1234", "CarunaParser", "a", JANUARY, result("a")));
+        assertTrue(store.add("1234", "CarunaParser", "b", FEBRUARY, result("b")));
+        assertFalse(store.add("1234", "CarunaParser", "a", JANUARY, result("a")));
+
+        var reloaded = new PeriodStore(directory);
+        assertEquals(2, reloaded.documents());
+        var rows = reloaded.query("1234", FROM, TO, null);
+        assertEquals(2, rows.size());
+        assertEquals(YearMonth.of(2021, 1), rows.get(0).month);
+        assertEquals(863, rows.get(0).kwh);
+        assertEquals(42.46, rows.get(0).eur);
+        assertEquals(1, rows.get(0).documents);
+        assertEquals(YearMonth.of(2021, 2), rows.get(1).month);
+        assertFalse(reloaded.add("1234", "CarunaParser", "b", FEBRUARY, result("b")));
+    }
+
+    @Test
+    void cutsOffTornRecordAtEnd() throws IOException {
+        var store = new PeriodStore(directory);
+        store.add("1234", "CarunaParser", "a", JANUARY, result("a"));
+        var firstRecordEnd = Files.size(log());
+        store.add("1234", "CarunaParser", "b", FEBRUARY, result("b"));
+
+        try (var channel = FileChannel.open(log(), StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(log()) - 3);
+        }
+
+        var reloaded = new PeriodStore(directory);
+        assertEquals(firstRecordEnd, Files.size(log()));
+        assertEquals(1, reloaded.documents());
+        assertEquals(1, reloaded.query("1234", FROM, TO, null).size());
+
+        assertTrue(reloaded.add("1234", "CarunaParser", "b", FEBRUARY, result("b")));
+        assertEquals(2, new PeriodStore(directory).query("1234", FROM, TO, null).size());
+    }
+
+    @Test
+    void cutsOffRecordWithBadChecksum() throws IOException {
+        var store = new PeriodStore(directory);
+        store.add("1234", "CarunaParser", "a", JANUARY, result("a"));
+        var firstRecordEnd = Files.size(log());
+        store.add("1234", "CarunaParser", "b", FEBRUARY, result("b"));
+
+        var bytes = Files.readAllBytes(log());
+        bytes[(int) firstRecordEnd + Integer.BYTES] ^= 1;
+        Files.write(log(), bytes);
+
+        var reloaded = new PeriodStore(directory);
+        assertEquals(firstRecordEnd, Files.size(log()));
+        assertEquals(1, reloaded.documents());
+        assertEquals(YearMonth.of(2021, 1), reloaded.query("1234", FROM, TO, null).get(0).month);
+    }
+
+    @Test
+    void reloadsStoredResults() throws IOException {
+        var store = new PeriodStore(directory);
+        store.add("1234", "CarunaParser", "a", JANUARY, result("a"));
+        store.add("1234", "CarunaParser", "b", FEBRUARY, result("b"));
+        store.add("1234", "HelenParser", "c", FEBRUARY, result("c"));
+        store.add("5678", "CarunaParser", "d", FEBRUARY, result("d"));
+
+        var reloaded = new PeriodStore(directory);
+        assertEquals(List.of(result("a"), result("b")), reloaded.results("1234", "CarunaParser", FROM, TO));
+        assertEquals(List.of(result("b")), reloaded.results("1234", "CarunaParser", YearMonth.of(2021, 2), TO));
+        assertEquals(List.of(result("c")), reloaded.results("1234", "HelenParser", FROM, TO));
+        assertTrue(reloaded.results("1234", "CarunaParser", YearMonth.of(2021, 3), TO).isEmpty());
+        assertTrue(reloaded.results("9999", "CarunaParser", FROM, TO).isEmpty());
+    }
+
+    @Test
+    void rejectsStoredResultsOfOtherClasses() throws IOException {
+        new PeriodStore(directory).add("1234", "CarunaParser", "a", JANUARY,
+                new HashMap<>(Map.of("Tammikuu", Level.INFO)));
+        var reloaded = new PeriodStore(directory);
+        assertThrows(InvalidClassException.class, () -> reloaded.results("1234", "CarunaParser", FROM, TO));
+    }
+
+    @Test
+    void storesResultsWithoutSyncAndInMemory() throws IOException {
+        var unsynced = new PeriodStore(directory, false);
+        unsynced.add("1234", "CarunaParser", "a", JANUARY, result("a"));
+        assertEquals(List.of(result("a")), new PeriodStore(directory).results("1234", "CarunaParser", FROM, TO));
+
+        var memory = new PeriodStore(null);
+        memory.add("1234", "CarunaParser", "a", JANUARY, result("a"));
+        assertEquals(List.of(result("a")), memory.results("1234", "CarunaParser", FROM, TO));
+    }
+
+    @Test
+    void emptyLogLoadsNothing() throws IOException {
+        var store = new PeriodStore(directory);
+        assertEquals(0, store.documents());
+        assertEquals(0, store.accounts());
+        assertTrue(store.query("1234", FROM, TO, null).isEmpty());
+    }
+
+    private static Serializable result(String document) {
+        return new HashMap<>(Map.of("Tammikuu", document));
+    }
+
+    private Path log() {
+        return directory.resolve("periods.log");
+    }
+}
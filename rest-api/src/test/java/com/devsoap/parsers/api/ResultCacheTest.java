@@ -0,0 +1,62 @@
+package com.devsoap.parsers.api;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResultCacheTest {
+
+    @Test
+    void enabledCacheParsesOnce() {
+        var cache = new ResultCache(16, Duration.ofHours(1), null, 0);
+        var parses = new AtomicInteger();
+        assertEquals("a1", cache.get("key", () -> "a" + parses.incrementAndGet()));
+        assertEquals("a1", cache.get("key", () -> "a" + parses.incrementAndGet()));
+        assertEquals(1, parses.get());
+        assertEquals(1, cache.hits());
+    }
+
+    @Test
+    void disabledCacheParsesEveryLookup() {
+        var cache = ResultCache.disabled();
+        var parses = new AtomicInteger();
+        cache.get("key", () -> "a" + parses.incrementAndGet());
+        cache.get("key", () -> "a" + parses.incrementAndGet());
+        assertEquals(2, parses.get());
+        assertEquals(0, cache.size());
+        assertEquals(2, cache.misses());
+    }
+
+    /**
+     * Both lookups of the same key are inside the parser at once, neither waits for the other's result.
+     */
+    @Test
+    void disabledCacheDoesNotCoalesceConcurrentLookups() throws Exception {
+        var cache = ResultCache.disabled();
+        var bothParsing = new CountDownLatch(2);
+        var first = CompletableFuture.supplyAsync(() -> cache.get("key", () -> parse(bothParsing, "first")));
+        var second = CompletableFuture.supplyAsync(() -> cache.get("key", () -> parse(bothParsing, "second")));
+        assertEquals("first", first.get(5, TimeUnit.SECONDS));
+        assertEquals("second", second.get(5, TimeUnit.SECONDS));
+        assertEquals(0, cache.coalesced());
+    }
+
+    private static String parse(CountDownLatch bothParsing, String result) {
+        bothParsing.countDown();
+        try {
+            if (!bothParsing.await(5, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Lookups were not parsed concurrently");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+        return result;
+    }
+}